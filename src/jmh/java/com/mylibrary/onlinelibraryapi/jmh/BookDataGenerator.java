@@ -0,0 +1,60 @@
+package com.mylibrary.onlinelibraryapi.jmh;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Seeded book generator: the same seed always yields the same catalog, so runs can be compared
+public class BookDataGenerator {
+    public static final long DEFAULT_SEED = 20240601L;
+
+    static final String[] TITLE_WORDS = {"Shadow", "River", "Empire", "Garden", "Winter", "Silent", "Crown",
+            "Ocean", "Forgotten", "Glass", "Iron", "Midnight", "Storm", "Library", "Secret", "Golden", "Last",
+            "Northern", "Wild", "Burning", "Lost", "House", "Road", "Star", "Dream", "Night", "Stone", "Fire"};
+    static final String[] FIRST_NAMES = {"Anna", "James", "Maria", "John", "Elena", "David", "Sofia", "Peter",
+            "Laura", "George", "Helen", "Thomas", "Clara", "Victor", "Irene", "Samuel"};
+    static final String[] LAST_NAMES = {"Tolkien", "Orwell", "Austen", "Dickens", "Woolf", "Hemingway", "Tolstoy",
+            "Shelley", "Bronte", "Kafka", "Borges", "Morrison", "Atwood", "Ishiguro", "Murakami", "Eco"};
+
+    private final SplittableRandom random;
+    private long sequence;
+
+    public BookDataGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    public Book next() {
+        long n = sequence++;
+        String title = word(TITLE_WORDS) + " " + word(TITLE_WORDS) + (random.nextInt(4) == 0 ? " " + word(TITLE_WORDS) : "");
+        String author = word(FIRST_NAMES) + " " + word(LAST_NAMES);
+        // Unique, valid ISBN-13 shaped numbers
+        String isbn = String.format("979%010d", n);
+        int year = 1800 + random.nextInt(225);
+        String description = "A " + word(TITLE_WORDS).toLowerCase() + " story about " + word(TITLE_WORDS).toLowerCase()
+                + " and " + word(TITLE_WORDS).toLowerCase() + ".";
+        return new Book(title, author, isbn, year, description);
+    }
+
+    public List<Book> next(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(next());
+        }
+        return books;
+    }
+
+    // Same books, with ids, for serialization benchmarks that never touch the database
+    public List<Book> withIds(int count) {
+        List<Book> books = next(count);
+        for (int i = 0; i < books.size(); i++) {
+            books.get(i).setId(i + 1L);
+        }
+        return books;
+    }
+
+    public String word(String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+}
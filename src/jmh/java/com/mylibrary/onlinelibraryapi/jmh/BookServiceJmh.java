@@ -0,0 +1,125 @@
+package com.mylibrary.onlinelibraryapi.jmh;
+
+import com.mylibrary.onlinelibraryapi.OnlineLibraryApiApplication;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service and repository hot paths against an in-memory H2 catalog seeded by {@link BookDataGenerator}.
+ * The whole application context is started once per fork, so caches, the search index and Hibernate
+ * behave as they do in the running app.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookServiceJmh {
+    private static final int QUERIES = 1024; // power of two, see nextIndex
+
+    @Param({"10000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private BookDataGenerator generator;
+    private long[] ids;
+    private String[] titleQueries;
+    private String[] authorQueries;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(OnlineLibraryApiApplication.class)
+                .profiles("test")
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_ON_EXIT=FALSE",
+                        "--openai.api.key=jmh",
+                        "--logging.level.root=WARN");
+        bookService = context.getBean(BookService.class);
+
+        generator = new BookDataGenerator(BookDataGenerator.DEFAULT_SEED);
+        ids = new long[catalogSize];
+        for (int loaded = 0; loaded < catalogSize; loaded += 1000) {
+            List<Book> saved = bookService.createBooks(generator.next(Math.min(1000, catalogSize - loaded)));
+            for (int i = 0; i < saved.size(); i++) {
+                ids[loaded + i] = saved.get(i).getId();
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(BookDataGenerator.DEFAULT_SEED);
+        titleQueries = new String[QUERIES];
+        authorQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            titleQueries[i] = BookDataGenerator.TITLE_WORDS[random.nextInt(BookDataGenerator.TITLE_WORDS.length)];
+            authorQueries[i] = BookDataGenerator.LAST_NAMES[random.nextInt(BookDataGenerator.LAST_NAMES.length)];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        return bookService.searchBooks(SearchMode.CONTAINS, titleQueries[nextIndex()], null, null, 0, 20);
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthor() {
+        return bookService.searchBooks(SearchMode.CONTAINS, null, authorQueries[nextIndex()], null, 0, 20);
+    }
+
+    @Benchmark
+    public List<Book> searchByTitleAndAuthor() {
+        int i = nextIndex();
+        return bookService.searchBooks(SearchMode.CONTAINS, titleQueries[i], authorQueries[i], null, 0, 20);
+    }
+
+    @Benchmark
+    public List<Book> searchByTitlePrefix() {
+        return bookService.searchBooks(SearchMode.PREFIX, titleQueries[nextIndex()], null, null, 0, 20);
+    }
+
+    @Benchmark
+    public Optional<Book> getBookById() {
+        return bookService.getBookById(ids[nextIndex() % ids.length]);
+    }
+
+    // What POST /books does: the insert, with a duplicate ISBN left to the unique constraint
+    @Benchmark
+    public Book createBook() {
+        return bookService.createBook(nextNewBook());
+    }
+
+    private synchronized Book nextNewBook() {
+        return generator.next();
+    }
+
+    private int nextIndex() {
+        return cursor++ & (QUERIES - 1);
+    }
+}
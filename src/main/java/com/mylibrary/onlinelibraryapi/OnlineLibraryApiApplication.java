@@ -3,10 +3,14 @@ package com.mylibrary.onlinelibraryapi;
 import io.github.cdimascio.dotenv.Dotenv;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.Objects;
 
 @SpringBootApplication
+@EnableAsync // @Async work runs on the application task executor (virtual threads when enabled)
+@EnableScheduling // background jobs such as AI insight precomputation
 public class OnlineLibraryApiApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,109 @@
+package com.mylibrary.onlinelibraryapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.TransactionCallbacks;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-evicting read-through cache of books by id, with a secondary ISBN -> id index.
+ * Entries are detached copies; callers always get their own copy back.
+ */
+@Component
+public class BookCache {
+    private final Cache<Long, Book> booksById;
+    private final Map<String, Long> idsByIsbn = new ConcurrentHashMap<>();
+
+    public BookCache(MeterRegistry meterRegistry,
+                     @Value("${library.cache.books.maximum-size:100000}") long maximumSize,
+                     @Value("${library.cache.books.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.booksById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .evictionListener((Long id, Book book, RemovalCause cause) -> {
+                    if (id != null && book != null) {
+                        idsByIsbn.remove(book.getIsbn(), id);
+                    }
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, booksById, "books");
+    }
+
+    // Returns the cached book or loads it; entries loaded by a transaction that rolls back are dropped again
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+        Book book = booksById.get(id, key -> loader.apply(key).map(loaded -> {
+            Book copy = copyOf(loaded);
+            idsByIsbn.put(copy.getIsbn(), key);
+            TransactionCallbacks.afterRollback(() -> invalidate(key));
+            return copy;
+        }).orElse(null));
+        return Optional.ofNullable(book).map(BookCache::copyOf);
+    }
+
+    // Only answers positively: an ISBN missing from the cache may still exist in the database
+    public boolean containsIsbn(String isbn) {
+        Long id = idsByIsbn.get(isbn);
+        if (id == null) {
+            return false;
+        }
+        Book book = booksById.getIfPresent(id);
+        return book != null && book.getIsbn().equals(isbn);
+    }
+
+    // Version of the cached book, without loading it or counting as a cache hit
+    public Optional<Long> cachedVersion(Long id) {
+        return Optional.ofNullable(booksById.asMap().get(id)).map(Book::getVersion);
+    }
+
+    public void invalidate(Long id) {
+        Book book = booksById.asMap().remove(id);
+        if (book != null) {
+            idsByIsbn.remove(book.getIsbn(), id);
+        }
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        ids.forEach(this::invalidate);
+    }
+
+    // Hit, miss and eviction counters
+    public CacheStats stats() {
+        return booksById.stats();
+    }
+
+    public long estimatedSize() {
+        return booksById.estimatedSize();
+    }
+
+    // Drop changed books now, and again after commit in case a concurrent reader re-cached the old row
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        if (event.type() == BookChangeEvent.Type.CREATED) {
+            return;
+        }
+        invalidateAll(event.ids());
+        TransactionCallbacks.afterCommit(() -> invalidateAll(event.ids()));
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                book.getPublicationYear(), book.getDescription(), book.getVersion(),
+                book.getNormalizedTitle(), book.getNormalizedAuthor());
+    }
+}
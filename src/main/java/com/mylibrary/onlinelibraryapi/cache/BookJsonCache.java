@@ -0,0 +1,104 @@
+package com.mylibrary.onlinelibraryapi.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.TransactionCallbacks;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Each book's JSON as UTF-8 bytes, exactly as the shared ObjectMapper writes it, bounded by total size.
+ * Entries remember the version they were written from, so a book read at another version is serialized afresh
+ * and replaces the entry; updated and deleted books are dropped as in BookCache.
+ * The returned arrays are shared and must not be modified.
+ */
+@Component
+public class BookJsonCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 64; // key, entry and array headers
+
+    private record Entry(long version, byte[] json) {
+    }
+
+    private final ObjectWriter writer;
+    private final Cache<Long, Entry> jsonById;
+
+    public BookJsonCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                         @Value("${library.cache.json.maximum-size:64MB}") DataSize maximumSize) {
+        this.writer = objectMapper.writerFor(Book.class);
+        this.jsonById = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Long id, Entry entry) -> ENTRY_OVERHEAD_BYTES + entry.json().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, jsonById, "book-json");
+    }
+
+    // The book's JSON, from the cache when it holds this version of the book
+    public byte[] toJson(Book book) {
+        Long id = book.getId();
+        Long version = book.getVersion();
+        if (id == null || version == null) {
+            return serialize(book);
+        }
+        Entry entry = jsonById.getIfPresent(id);
+        if (entry != null && entry.version() == version) {
+            return entry.json();
+        }
+        byte[] json = serialize(book);
+        jsonById.put(id, new Entry(version, json));
+        // A version written by a transaction that rolls back will be reused by the next write
+        TransactionCallbacks.afterRollback(() -> jsonById.invalidate(id));
+        return json;
+    }
+
+    /**
+     * The book's JSON for one-off passes over many books, such as the streamed catalog: a cached entry is used
+     * when it holds this version, but misses are not cached, so the pass neither evicts the hot entries nor
+     * leaves a rollback callback per book in its transaction.
+     */
+    public byte[] toJsonUncached(Book book) {
+        Entry entry = book.getId() == null ? null : jsonById.getIfPresent(book.getId());
+        if (entry != null && book.getVersion() != null && entry.version() == book.getVersion()) {
+            return entry.json();
+        }
+        return serialize(book);
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        jsonById.invalidateAll(ids);
+    }
+
+    public long estimatedSize() {
+        return jsonById.estimatedSize();
+    }
+
+    // Drop changed books now, and again after commit in case a concurrent reader re-cached the old row
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        if (event.type() == BookChangeEvent.Type.CREATED) {
+            return;
+        }
+        invalidateAll(event.ids());
+        TransactionCallbacks.afterCommit(() -> invalidateAll(event.ids()));
+    }
+
+    private byte[] serialize(Book book) {
+        try {
+            return writer.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.mylibrary.onlinelibraryapi.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot file of the columnar catalog, little-endian throughout:
+ * <pre>
+ *   header       magic "LBSN", format version, change log sequence, creation time (epoch millis),
+ *                row count, author count, dictionary section size (4 bytes), title/ISBN/description
+ *                section sizes (8 bytes each)
+ *   columns      ids, versions, title refs, ISBN refs, description refs (8 bytes per row each),
+ *                author codes (4 bytes per row), years (2 bytes per row)
+ *   dictionary   per author: UTF-8 length, UTF-8 bytes
+ *   arenas       title, ISBN and description UTF-8 bytes, each the arena's chunks back to back
+ *   trailer      CRC32C of everything before it
+ * </pre>
+ * Every section is a plain copy of the catalog's arrays (less its deleted rows), so loading a snapshot is a fast
+ * deserializer rather than a view of the file: each section is memory-mapped and bulk-copied into fresh arrays,
+ * with nothing to parse, no entities and no UTF-8 encoding. That is still proportional to the catalog, which
+ * serves reads once the copy is done. Files are written next to their final name and then moved into place, so
+ * a reader never sees a half-written snapshot.
+ */
+public final class CatalogSnapshot {
+    private static final int MAGIC = 0x4E53424C; // "LBSN" in file order
+    private static final int FORMAT_VERSION = 2; // 1 had 4-byte arena sizes
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 3 * 4 + 3 * 8;
+    private static final int ROW_BYTES = 5 * 8 + 4 + 2;
+    private static final int TRAILER_BYTES = 4;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    public record Header(int formatVersion, long sequence, Instant createdAt, int books) {
+    }
+
+    // The catalog's arrays; only the first `rows` entries of each column are used. The text is the arenas' chunks.
+    record Columns(int rows, long[] ids, long[] versions, short[] years, int[] authors, long[] titles, long[] isbns,
+                   long[] descriptions, List<String> authorNames, List<ByteBuffer> titleText,
+                   List<ByteBuffer> isbnText, List<ByteBuffer> descriptionText) {
+    }
+
+    record Contents(Header header, Columns columns) {
+    }
+
+    private CatalogSnapshot() {
+    }
+
+    // Reads only the header, e.g. to decide whether a snapshot is worth restoring
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return header(section(channel, 0, Math.min(channel.size(), HEADER_BYTES), null));
+        }
+    }
+
+    // Writes the live rows of the columns; deleted ones (tombstones) are left out, their text stays in the arenas
+    static Header write(Path path, long sequence, Instant createdAt, Columns columns) throws IOException {
+        int books = 0;
+        for (int slot = 0; slot < columns.rows(); slot++) {
+            if (live(columns, slot)) {
+                books++;
+            }
+        }
+        List<byte[]> names = new ArrayList<>(columns.authorNames().size());
+        int dictionaryBytes = 0;
+        for (String name : columns.authorNames()) {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            names.add(encoded);
+            dictionaryBytes += 4 + encoded.length;
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (Output output = new Output(FileChannel.open(temporary, StandardOpenOption.WRITE))) {
+                output.putInt(MAGIC);
+                output.putInt(FORMAT_VERSION);
+                output.putLong(sequence);
+                output.putLong(createdAt.toEpochMilli());
+                output.putInt(books);
+                output.putInt(names.size());
+                output.putInt(dictionaryBytes);
+                output.putLong(remaining(columns.titleText()));
+                output.putLong(remaining(columns.isbnText()));
+                output.putLong(remaining(columns.descriptionText()));
+
+                for (long[] column : List.of(columns.ids(), columns.versions(), columns.titles(), columns.isbns(),
+                        columns.descriptions())) {
+                    for (int slot = 0; slot < columns.rows(); slot++) {
+                        if (live(columns, slot)) {
+                            output.putLong(column[slot]);
+                        }
+                    }
+                }
+                for (int slot = 0; slot < columns.rows(); slot++) {
+                    if (live(columns, slot)) {
+                        output.putInt(columns.authors()[slot]);
+                    }
+                }
+                for (int slot = 0; slot < columns.rows(); slot++) {
+                    if (live(columns, slot)) {
+                        output.putShort(columns.years()[slot]);
+                    }
+                }
+                for (byte[] name : names) {
+                    output.putInt(name.length);
+                    output.putBytes(ByteBuffer.wrap(name));
+                }
+                for (List<ByteBuffer> arena : List.of(columns.titleText(), columns.isbnText(),
+                        columns.descriptionText())) {
+                    for (ByteBuffer chunk : arena) {
+                        output.putBytes(chunk);
+                    }
+                }
+                output.finish();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return new Header(FORMAT_VERSION, sequence, Instant.ofEpochMilli(createdAt.toEpochMilli()), books);
+    }
+
+    // Maps the file section by section, copying each into arrays; throws if the file is not a valid snapshot
+    static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Catalog snapshot " + path + " is truncated");
+            }
+            CRC32C checksum = new CRC32C();
+            ByteBuffer fields = section(channel, 0, HEADER_BYTES, checksum);
+            Header parsed = header(fields);
+            int rows = parsed.books();
+            int authorCount = fields.getInt();
+            int dictionaryBytes = fields.getInt();
+            long titleBytes = fields.getLong();
+            long isbnBytes = fields.getLong();
+            long descriptionBytes = fields.getLong();
+            if (rows < 0 || authorCount < 0 || dictionaryBytes < 0 || titleBytes < 0 || isbnBytes < 0
+                    || descriptionBytes < 0 || size != HEADER_BYTES + (long) ROW_BYTES * rows + dictionaryBytes
+                    + titleBytes + isbnBytes + descriptionBytes + TRAILER_BYTES) {
+                throw new IOException("Catalog snapshot " + path + " does not match its header");
+            }
+
+            long offset = HEADER_BYTES;
+            long[] ids = new long[rows];
+            long[] versions = new long[rows];
+            long[] titles = new long[rows];
+            long[] isbns = new long[rows];
+            long[] descriptions = new long[rows];
+            for (long[] column : List.of(ids, versions, titles, isbns, descriptions)) {
+                section(channel, offset, 8L * rows, checksum).asLongBuffer().get(column);
+                offset += 8L * rows;
+            }
+            int[] authors = new int[rows];
+            section(channel, offset, 4L * rows, checksum).asIntBuffer().get(authors);
+            offset += 4L * rows;
+            short[] years = new short[rows];
+            section(channel, offset, 2L * rows, checksum).asShortBuffer().get(years);
+            offset += 2L * rows;
+
+            ByteBuffer dictionary = section(channel, offset, dictionaryBytes, checksum);
+            offset += dictionaryBytes;
+            List<String> authorNames = new ArrayList<>(authorCount);
+            for (int i = 0; i < authorCount; i++) {
+                int length = dictionary.remaining() < 4 ? -1 : dictionary.getInt();
+                if (length < 0 || length > dictionary.remaining()) {
+                    throw new IOException("Catalog snapshot " + path + " has a corrupt author dictionary");
+                }
+                byte[] name = new byte[length];
+                dictionary.get(name);
+                authorNames.add(new String(name, StandardCharsets.UTF_8));
+            }
+
+            // Read back in arena chunks, so no section or array is bound by the 2 GB limit of a single one
+            List<List<ByteBuffer>> arenas = new ArrayList<>(3);
+            for (long arenaBytes : new long[]{titleBytes, isbnBytes, descriptionBytes}) {
+                List<ByteBuffer> chunks = new ArrayList<>();
+                for (long read = 0; read < arenaBytes; ) {
+                    byte[] chunk = new byte[(int) Math.min(Utf8Arena.CHUNK_BYTES, arenaBytes - read)];
+                    section(channel, offset, chunk.length, checksum).get(chunk);
+                    chunks.add(ByteBuffer.wrap(chunk));
+                    offset += chunk.length;
+                    read += chunk.length;
+                }
+                arenas.add(chunks);
+            }
+
+            int expected = section(channel, offset, TRAILER_BYTES, null).getInt();
+            if ((int) checksum.getValue() != expected) {
+                throw new IOException("Catalog snapshot " + path + " fails its checksum");
+            }
+            return new Contents(parsed, new Columns(rows, ids, versions, years, authors, titles, isbns, descriptions,
+                    authorNames, arenas.get(0), arenas.get(1), arenas.get(2)));
+        }
+    }
+
+    private static boolean live(Columns columns, int slot) {
+        return columns.versions()[slot] != ColumnarCatalog.TOMBSTONE;
+    }
+
+    private static long remaining(List<ByteBuffer> buffers) {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    // Parses the fixed fields at the start of the header, leaving the buffer positioned after the row count
+    private static Header header(ByteBuffer header) throws IOException {
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a catalog snapshot");
+        }
+        int formatVersion = header.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported catalog snapshot format version " + formatVersion);
+        }
+        long sequence = header.getLong();
+        Instant createdAt = Instant.ofEpochMilli(header.getLong());
+        return new Header(formatVersion, sequence, createdAt, header.getInt());
+    }
+
+    private static ByteBuffer section(FileChannel channel, long offset, long length, CRC32C checksum)
+            throws IOException {
+        ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        if (checksum != null) {
+            checksum.update(section.duplicate());
+        }
+        return section;
+    }
+
+    // Buffered, checksummed writes to the channel
+    private static final class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C checksum = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRoom(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRoom(8);
+            buffer.putLong(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensureRoom(2);
+            buffer.putShort(value);
+        }
+
+        void putBytes(ByteBuffer bytes) throws IOException {
+            ByteBuffer source = bytes.duplicate();
+            while (source.hasRemaining()) {
+                ensureRoom(1);
+                int chunk = Math.min(source.remaining(), buffer.remaining());
+                buffer.put(source.slice(source.position(), chunk));
+                source.position(source.position() + chunk);
+            }
+        }
+
+        // Appends the checksum of everything written so far and forces the file to disk
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            channel.force(true);
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
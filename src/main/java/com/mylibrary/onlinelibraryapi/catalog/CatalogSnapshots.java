@@ -0,0 +1,113 @@
+package com.mylibrary.onlinelibraryapi.catalog;
+
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import com.mylibrary.onlinelibraryapi.service.BookChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Snapshot files of the columnar catalog, so a restart can load it without reading the whole books table.
+ * Snapshots are written from the live catalog, which only holds committed writes, along with the change log
+ * sequence it is known to include (see ColumnarCatalog.writeSnapshot). Changes logged after that
+ * sequence may or may not be in the file; on boot every one of them is replayed on top of it, which converges
+ * either way. Only active when both library.catalog.snapshot.enabled and the catalog itself are.
+ */
+@Component
+public class CatalogSnapshots {
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshots.class);
+    private static final int CATCH_UP_CHUNK_SIZE = 1000;
+
+    private final BookChangeLog bookChangeLog;
+    private final ColumnarCatalog columnarCatalog;
+    private final boolean enabled;
+    private final Path path;
+
+    public CatalogSnapshots(BookChangeLog bookChangeLog, ColumnarCatalog columnarCatalog,
+                            @Value("${library.catalog.snapshot.enabled:false}") boolean enabled,
+                            @Value("${library.catalog.snapshot.path:./data/catalog.snapshot}") Path path) {
+        this.bookChangeLog = bookChangeLog;
+        this.columnarCatalog = columnarCatalog;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    @Scheduled(initialDelayString = "${library.catalog.snapshot.initial-delay:1m}",
+            fixedDelayString = "${library.catalog.snapshot.interval:10m}")
+    public void scheduledSnapshot() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write catalog snapshot {}", path, e);
+        }
+    }
+
+    // Writes a snapshot of the catalog now, replacing the previous one
+    public synchronized CatalogSnapshot.Header writeSnapshot() throws IOException {
+        long start = System.nanoTime();
+        CatalogSnapshot.Header header = columnarCatalog.writeSnapshot(path, bookChangeLog.lastSequence());
+        log.info("Wrote catalog snapshot of {} books at change {} to {} in {} ms", header.books(), header.sequence(),
+                path, (System.nanoTime() - start) / 1_000_000);
+        return header;
+    }
+
+    /**
+     * Loads the (empty) catalog from the snapshot file and replays every change logged since it was written.
+     * Returns false, leaving the catalog empty, when snapshots are off, there is no usable file, or the file is
+     * ahead of the change log (say the database was replaced); the catalog then has to be loaded from the table.
+     */
+    public boolean restore(ColumnarCatalog catalog) {
+        if (!isEnabled() || !Files.exists(path)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            long lastSequence = bookChangeLog.lastSequence();
+            if (CatalogSnapshot.readHeader(path).sequence() > lastSequence) {
+                log.warn("Catalog snapshot {} is ahead of the change log (at {}), ignoring it", path, lastSequence);
+                return false;
+            }
+            CatalogSnapshot.Header header = catalog.restoreSnapshot(path);
+            long loaded = System.nanoTime();
+            long replayed = catchUp(catalog, header.sequence());
+            log.info("Loaded {} books from catalog snapshot {} (change {}, written {}) in {} ms, "
+                            + "then replayed {} changes in {} ms", header.books(), path, header.sequence(),
+                    header.createdAt(), (loaded - start) / 1_000_000, replayed,
+                    (System.nanoTime() - loaded) / 1_000_000);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore catalog snapshot {}", path, e);
+            catalog.clear();
+            return false;
+        }
+    }
+
+    // The catalog can switch itself off at runtime (see ColumnarCatalog), which stops the snapshots too
+    private boolean isEnabled() {
+        return enabled && columnarCatalog.isEnabled();
+    }
+
+    private long catchUp(ColumnarCatalog catalog, long since) {
+        long replayed = 0;
+        List<BookChange> changes;
+        do {
+            changes = bookChangeLog.changesSince(since, CATCH_UP_CHUNK_SIZE);
+            catalog.replay(changes);
+            replayed += changes.size();
+            if (!changes.isEmpty()) {
+                since = changes.get(changes.size() - 1).sequence();
+            }
+        } while (changes.size() == CATCH_UP_CHUNK_SIZE);
+        return replayed;
+    }
+}
@@ -0,0 +1,589 @@
+package com.mylibrary.onlinelibraryapi.catalog;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.TransactionCallbacks;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Read-serving copy of the whole catalog kept as primitive columns rather than entities: ids and versions in
+ * long arrays, years in a short array, authors as codes into a dictionary, and title, ISBN and description as
+ * UTF-8 slices of byte arenas. A book costs 46 bytes of columns plus its text, and is only materialized as a
+ * Book when it is read. Rows are kept in id order, so a lookup is a binary search and a keyset page a scan.
+ * Deleted rows are tombstoned and replaced text stays in the arenas until a compaction rewrites both.
+ *
+ * Off unless library.catalog.columnar.enabled is set. Like the search index it is loaded at startup and
+ * follows BookService writes once they commit, so other readers never see uncommitted books; until then the
+ * writing transaction reads its own changes on top of the columns. If the books stop fitting in memory it
+ * switches itself off and drops its columns, and BookService reads from the database again until the next
+ * restart.
+ */
+@Component
+public class ColumnarCatalog {
+    private static final Logger log = LoggerFactory.getLogger(ColumnarCatalog.class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ROW_BYTES = 8 + 8 + 2 + 4 + 3 * 8; // id, version, year, author code, 3 text refs
+    private static final int DICTIONARY_ENTRY_BYTES = 96; // String, its byte[], map node and boxed code
+    static final long TOMBSTONE = -1; // version of a deleted row
+    private static final int MIN_WASTED_ROWS = 1024;
+    private static final long MIN_WASTED_TEXT = 1 << 20;
+
+    private volatile boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Parallel columns, one entry per row in id order, then the dictionary and arenas they point into
+    private long[] ids;
+    private long[] versions;
+    private short[] years;
+    private int[] authors;
+    private long[] titles;
+    private long[] isbns;
+    private long[] descriptions;
+    private int rows; // including tombstones
+    private int tombstones;
+    // Books deleted while other transactions with changes were open, so that a commit finishing late cannot
+    // bring them back (ids are never reused); cleared once none are open
+    private final Set<Long> deletedIds = new HashSet<>();
+    private int openWrites;
+    private List<String> authorNames;
+    private Map<String, Integer> authorCodes;
+    private Utf8Arena titleText;
+    private Utf8Arena isbnText;
+    private Utf8Arena descriptionText;
+    // Resource key for the current transaction's changes: book id -> book as written, null when deleted
+    private final Object pendingKey = new Object();
+
+    // Estimated heap held by the catalog, from the capacity of its arrays
+    public record Stats(int books, int tombstones, int authors, long columnBytes, long textBytes,
+                        long dictionaryBytes) {
+
+        public long totalBytes() {
+            return columnBytes + textBytes + dictionaryBytes;
+        }
+
+        public double bytesPerBook() {
+            return books == 0 ? 0 : (double) totalBytes() / books;
+        }
+    }
+
+    @Autowired
+    public ColumnarCatalog(@Value("${library.catalog.columnar.enabled:false}") boolean enabled,
+                           MeterRegistry meterRegistry) {
+        this(enabled);
+        if (enabled) {
+            Gauge.builder("library.catalog.books", this, catalog -> catalog.stats().books())
+                    .description("Books held by the columnar catalog")
+                    .register(meterRegistry);
+            Gauge.builder("library.catalog.memory", this, catalog -> catalog.stats().totalBytes())
+                    .description("Estimated heap held by the columnar catalog")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    private ColumnarCatalog(boolean enabled) {
+        this.enabled = enabled;
+        allocate(enabled ? INITIAL_CAPACITY : 0);
+        titleText = new Utf8Arena(0);
+        isbnText = new Utf8Arena(0);
+        descriptionText = new Utf8Arena(0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows - tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Loads one book, e.g. while filling the catalog at startup
+    public void add(Book book) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            put(book);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            disable(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Book> get(long id) {
+        Map<Long, Book> own = ownChanges();
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(current(id, own));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Long> version(long id) {
+        Map<Long, Book> own = ownChanges();
+        if (own != null && own.containsKey(id)) {
+            return Optional.ofNullable(own.get(id)).map(Book::getVersion);
+        }
+        lock.readLock().lock();
+        try {
+            int slot = find(id);
+            return slot >= 0 && versions[slot] != TOMBSTONE ? Optional.of(versions[slot]) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // At most `limit` books with an id greater than `afterId` (or from the start when null), in id order
+    public List<Book> booksAfter(Long afterId, int limit) {
+        // The transaction's own books, merged in by id; rows it changed or deleted are skipped
+        Map<Long, Book> own = ownChanges();
+        NavigableMap<Long, Book> written = new TreeMap<>();
+        if (own != null) {
+            own.forEach((id, book) -> {
+                if (book != null && (afterId == null || id > afterId)) {
+                    written.put(id, book);
+                }
+            });
+        }
+        lock.readLock().lock();
+        try {
+            int slot = 0;
+            if (afterId != null) {
+                int position = find(afterId);
+                slot = position >= 0 ? position + 1 : -position - 1;
+            }
+            List<Book> books = new ArrayList<>(Math.min(limit, rows - slot + written.size()));
+            for (; slot < rows && books.size() < limit; slot++) {
+                while (!written.isEmpty() && written.firstKey() <= ids[slot] && books.size() < limit) {
+                    books.add(copyOf(written.pollFirstEntry().getValue()));
+                }
+                if (versions[slot] != TOMBSTONE && books.size() < limit
+                        && (own == null || !own.containsKey(ids[slot]))) {
+                    books.add(materialize(slot));
+                }
+            }
+            while (!written.isEmpty() && books.size() < limit) {
+                books.add(copyOf(written.pollFirstEntry().getValue()));
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The books with these ids in the given order; ids the catalog does not hold are skipped
+    public List<Book> getAll(List<Long> ids) {
+        Map<Long, Book> own = ownChanges();
+        lock.readLock().lock();
+        try {
+            List<Book> books = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Book book = current(id, own);
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Hands every committed book to the consumer in id order
+    public void forEach(Consumer<Book> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < rows; slot++) {
+                if (versions[slot] != TOMBSTONE) {
+                    consumer.accept(materialize(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Applies committed changes from the change log in order, e.g. the ones made since a snapshot was taken.
+    // Entries carry the book as it is now, so replaying one that is already reflected does no harm.
+    public void replay(List<BookChange> changes) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (BookChange change : changes) {
+                if (change.book() == null) {
+                    delete(change.id());
+                } else {
+                    put(change.book());
+                }
+            }
+            compactIfWasteful();
+        } catch (RuntimeException | OutOfMemoryError e) {
+            disable(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(enabled ? INITIAL_CAPACITY : 0);
+            titleText = new Utf8Arena(0);
+            isbnText = new Utf8Arena(0);
+            descriptionText = new Utf8Arena(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stops serving from the catalog for good and lets go of its columns, after they failed to grow
+    private void disable(Throwable cause) {
+        enabled = false;
+        allocate(0);
+        titleText = new Utf8Arena(0);
+        isbnText = new Utf8Arena(0);
+        descriptionText = new Utf8Arena(0);
+        log.error("Columnar catalog switched off, book reads go to the database until restart", cause);
+    }
+
+    /**
+     * Writes the books to a snapshot file (see CatalogSnapshot) under the read lock, so writes wait for the file
+     * but reads carry on. The columns only ever hold committed books. `sequence` has to be read from the change
+     * log before the call: a commit reaches the catalog before its change log number counts as committed, so
+     * everything up to it is in the catalog by then. Later changes may be too; replaying them on restore
+     * converges either way.
+     */
+    public CatalogSnapshot.Header writeSnapshot(Path path, long sequence) throws IOException {
+        lock.readLock().lock();
+        try {
+            return CatalogSnapshot.write(path, sequence, Instant.now(), columns());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Replaces the books with those of a snapshot file; its header tells which change log sequence they reflect
+    public CatalogSnapshot.Header restoreSnapshot(Path path) throws IOException {
+        CatalogSnapshot.Contents snapshot = CatalogSnapshot.read(path);
+        CatalogSnapshot.Columns columns = snapshot.columns();
+        lock.writeLock().lock();
+        try {
+            ids = columns.ids();
+            versions = columns.versions();
+            years = columns.years();
+            authors = columns.authors();
+            titles = columns.titles();
+            isbns = columns.isbns();
+            descriptions = columns.descriptions();
+            rows = columns.rows();
+            tombstones = 0;
+            authorNames = new ArrayList<>(columns.authorNames());
+            authorCodes = new HashMap<>();
+            for (int code = 0; code < authorNames.size(); code++) {
+                authorCodes.put(authorNames.get(code), code);
+            }
+            titleText = Utf8Arena.wrap(columns.titleText());
+            isbnText = Utf8Arena.wrap(columns.isbnText());
+            descriptionText = Utf8Arena.wrap(columns.descriptionText());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return snapshot.header();
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long dictionaryBytes = 0;
+            for (String name : authorNames) {
+                dictionaryBytes += DICTIONARY_ENTRY_BYTES + name.length();
+            }
+            return new Stats(rows - tombstones, tombstones, authorNames.size(), (long) ROW_BYTES * ids.length,
+                    titleText.capacity() + isbnText.capacity() + descriptionText.capacity(), dictionaryBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Holds BookService writes back until their transaction commits, applying them right away outside one
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, Book> changes = new LinkedHashMap<>();
+        if (event.type() == BookChangeEvent.Type.DELETED) {
+            event.ids().forEach(id -> changes.put(id, null));
+        } else {
+            event.books().forEach(book -> changes.put(book.getId(), copyOf(book)));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.writeLock().lock();
+            try {
+                apply(changes);
+            } catch (RuntimeException | OutOfMemoryError e) {
+                disable(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        TransactionCallbacks.pending(pendingKey, this::writeStarted, this::finish).putAll(changes);
+    }
+
+    private Map<Long, Book> writeStarted() {
+        lock.writeLock().lock();
+        try {
+            openWrites++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new LinkedHashMap<>();
+    }
+
+    private void finish(Map<Long, Book> changes, boolean committed) {
+        lock.writeLock().lock();
+        try {
+            if (committed && enabled) {
+                apply(changes);
+            }
+        } catch (RuntimeException | OutOfMemoryError e) {
+            disable(e);
+        } finally {
+            if (--openWrites == 0) {
+                deletedIds.clear();
+            }
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Book> ownChanges() {
+        return (Map<Long, Book>) TransactionSynchronizationManager.getResource(pendingKey);
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getPublicationYear(),
+                book.getDescription(), book.getVersion(), null, null);
+    }
+
+    // The methods below expect the lock to be held (the write lock for those that change the columns)
+
+    private CatalogSnapshot.Columns columns() {
+        return new CatalogSnapshot.Columns(rows, ids, versions, years, authors, titles, isbns, descriptions,
+                authorNames, titleText.contents(), isbnText.contents(), descriptionText.contents());
+    }
+
+    private int find(long id) {
+        return Arrays.binarySearch(ids, 0, rows, id);
+    }
+
+    private Book row(long id) {
+        int slot = find(id);
+        return slot >= 0 && versions[slot] != TOMBSTONE ? materialize(slot) : null;
+    }
+
+    // The book as the transaction with these changes (if any) sees it
+    private Book current(long id, Map<Long, Book> own) {
+        if (own != null && own.containsKey(id)) {
+            Book book = own.get(id);
+            return book == null ? null : copyOf(book);
+        }
+        return row(id);
+    }
+
+    // Commits of the same book can report back out of order: an older version never replaces a newer one,
+    // and a deleted book stays deleted
+    private void apply(Map<Long, Book> changes) {
+        changes.forEach((id, book) -> {
+            if (book == null) {
+                delete(id);
+                if (openWrites > 0) {
+                    deletedIds.add(id);
+                }
+                return;
+            }
+            int slot = find(id);
+            if (deletedIds.contains(id)
+                    || (slot >= 0 && versions[slot] != TOMBSTONE && versions[slot] > book.getVersion())) {
+                return;
+            }
+            put(book);
+        });
+        compactIfWasteful();
+    }
+
+    private Book materialize(int slot) {
+        return new Book(ids[slot], titleText.get(titles[slot]), authorNames.get(authors[slot]),
+                isbnText.get(isbns[slot]), (int) years[slot], descriptionText.get(descriptions[slot]),
+                versions[slot], null, null);
+    }
+
+    private void put(Book book) {
+        long id = book.getId();
+        int slot = find(id);
+        boolean present = slot >= 0 && versions[slot] != TOMBSTONE;
+        long version = book.getVersion();
+        if (slot < 0) {
+            slot = -slot - 1;
+            insertRow(slot, id);
+        } else if (present) {
+            releaseText(slot);
+        } else {
+            tombstones--;
+        }
+        versions[slot] = version;
+        years[slot] = book.getPublicationYear().shortValue();
+        authors[slot] = authorCodes.computeIfAbsent(book.getAuthor(), name -> {
+            authorNames.add(name);
+            return authorNames.size() - 1;
+        });
+        titles[slot] = titleText.add(book.getTitle());
+        isbns[slot] = isbnText.add(book.getIsbn());
+        descriptions[slot] = descriptionText.add(book.getDescription());
+    }
+
+    private void delete(long id) {
+        int slot = find(id);
+        if (slot < 0 || versions[slot] == TOMBSTONE) {
+            return;
+        }
+        releaseText(slot);
+        versions[slot] = TOMBSTONE;
+        titles[slot] = Utf8Arena.NULL;
+        isbns[slot] = Utf8Arena.NULL;
+        descriptions[slot] = Utf8Arena.NULL;
+        tombstones++;
+    }
+
+    private void releaseText(int slot) {
+        titleText.release(titles[slot]);
+        isbnText.release(isbns[slot]);
+        descriptionText.release(descriptions[slot]);
+    }
+
+    // Ids are handed out in increasing order, so a new row is appended or lands close to the end
+    private void insertRow(int slot, long id) {
+        if (rows == ids.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, rows + rows / 2);
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            years = Arrays.copyOf(years, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            isbns = Arrays.copyOf(isbns, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+        int tail = rows - slot;
+        if (tail > 0) {
+            System.arraycopy(ids, slot, ids, slot + 1, tail);
+            System.arraycopy(versions, slot, versions, slot + 1, tail);
+            System.arraycopy(years, slot, years, slot + 1, tail);
+            System.arraycopy(authors, slot, authors, slot + 1, tail);
+            System.arraycopy(titles, slot, titles, slot + 1, tail);
+            System.arraycopy(isbns, slot, isbns, slot + 1, tail);
+            System.arraycopy(descriptions, slot, descriptions, slot + 1, tail);
+        }
+        ids[slot] = id;
+        rows++;
+    }
+
+    // Once half the rows are tombstones or half the text is replaced, copy the live rows into fresh columns
+    private void compactIfWasteful() {
+        long wastedText = titleText.garbage() + isbnText.garbage() + descriptionText.garbage();
+        long text = titleText.size() + isbnText.size() + descriptionText.size();
+        if ((tombstones >= MIN_WASTED_ROWS && 2L * tombstones > rows)
+                || (wastedText >= MIN_WASTED_TEXT && 2 * wastedText > text)) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        long[] oldIds = ids;
+        long[] oldVersions = versions;
+        short[] oldYears = years;
+        int[] oldAuthors = authors;
+        long[] oldTitles = titles;
+        long[] oldIsbns = isbns;
+        long[] oldDescriptions = descriptions;
+        int oldRows = rows;
+        List<String> oldAuthorNames = authorNames;
+        Utf8Arena oldTitleText = titleText;
+        Utf8Arena oldIsbnText = isbnText;
+        Utf8Arena oldDescriptionText = descriptionText;
+
+        int live = rows - tombstones;
+        allocate(Math.max(INITIAL_CAPACITY, live + live / 2));
+        titleText = new Utf8Arena(oldTitleText.size() - oldTitleText.garbage());
+        isbnText = new Utf8Arena(oldIsbnText.size() - oldIsbnText.garbage());
+        descriptionText = new Utf8Arena(oldDescriptionText.size() - oldDescriptionText.garbage());
+        for (int slot = 0; slot < oldRows; slot++) {
+            if (oldVersions[slot] == TOMBSTONE) {
+                continue;
+            }
+            ids[rows] = oldIds[slot];
+            versions[rows] = oldVersions[slot];
+            years[rows] = oldYears[slot];
+            authors[rows] = authorCodes.computeIfAbsent(oldAuthorNames.get(oldAuthors[slot]), name -> {
+                authorNames.add(name);
+                return authorNames.size() - 1;
+            });
+            titles[rows] = oldTitleText.copyTo(titleText, oldTitles[slot]);
+            isbns[rows] = oldIsbnText.copyTo(isbnText, oldIsbns[slot]);
+            descriptions[rows] = oldDescriptionText.copyTo(descriptionText, oldDescriptions[slot]);
+            rows++;
+        }
+    }
+
+    // Empty columns and author dictionary; the arenas are set up by the caller
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        versions = new long[capacity];
+        years = new short[capacity];
+        authors = new int[capacity];
+        titles = new long[capacity];
+        isbns = new long[capacity];
+        descriptions = new long[capacity];
+        rows = 0;
+        tombstones = 0;
+        authorNames = new ArrayList<>();
+        authorCodes = new HashMap<>();
+    }
+}
@@ -0,0 +1,152 @@
+package com.mylibrary.onlinelibraryapi.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only store of strings as UTF-8 in chunks of up to 16 MB, so it is not bound by the size of one array.
+// A string is referenced by a long holding its offset across the chunks (high 40 bits) and byte length (low
+// 24 bits); null is the NULL reference. A string never spans two chunks: one that does not fit in the rest of a
+// chunk starts the next, and the gap counts as garbage. Replaced strings also stay behind as garbage until the
+// owner copies the live ones into a fresh arena. Not thread-safe.
+final class Utf8Arena {
+    static final long NULL = -1;
+
+    static final int CHUNK_BYTES = 1 << 24;
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long MAX_SIZE = 1L << (64 - LENGTH_BITS - 1);
+
+    // Every chunk but the last is CHUNK_BYTES long and full up to the end, gaps included
+    private final List<byte[]> chunks = new ArrayList<>();
+    private int used; // bytes used in the last chunk
+    private long garbage;
+
+    // Sized for `capacity` bytes up to one chunk; further chunks are added as they are needed
+    Utf8Arena(long capacity) {
+        chunks.add(new byte[(int) Math.min(CHUNK_BYTES, Math.max(capacity, 16))]);
+    }
+
+    // An arena holding exactly the remaining bytes of the buffers, e.g. read back from a snapshot, where every
+    // buffer but the last holds CHUNK_BYTES. A buffer wrapping a whole array hands the array over as is,
+    // anything else is copied.
+    static Utf8Arena wrap(List<ByteBuffer> contents) {
+        Utf8Arena arena = new Utf8Arena(0);
+        arena.chunks.clear();
+        for (ByteBuffer chunk : contents) {
+            if (chunk.hasArray() && chunk.arrayOffset() == 0 && chunk.position() == 0
+                    && chunk.remaining() == chunk.array().length) {
+                arena.chunks.add(chunk.array());
+            } else {
+                byte[] bytes = new byte[chunk.remaining()];
+                chunk.duplicate().get(bytes);
+                arena.chunks.add(bytes);
+            }
+        }
+        if (arena.chunks.isEmpty()) {
+            arena.chunks.add(new byte[16]);
+        }
+        arena.used = arena.chunks.get(arena.chunks.size() - 1).length;
+        return arena;
+    }
+
+    long add(String text) {
+        if (text == null) {
+            return NULL;
+        }
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        return add(encoded, 0, encoded.length);
+    }
+
+    String get(long ref) {
+        return ref == NULL ? null
+                : new String(chunks.get(chunk(ref)), position(ref), length(ref), StandardCharsets.UTF_8);
+    }
+
+    // Copies the referenced bytes into the other arena without decoding them
+    long copyTo(Utf8Arena target, long ref) {
+        return ref == NULL ? NULL : target.add(chunks.get(chunk(ref)), position(ref), length(ref));
+    }
+
+    void release(long ref) {
+        if (ref != NULL) {
+            garbage += length(ref);
+        }
+    }
+
+    // Read-only views of the bytes in use, garbage included, one per chunk
+    List<ByteBuffer> contents() {
+        List<ByteBuffer> contents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] chunk = chunks.get(i);
+            contents.add(ByteBuffer.wrap(chunk, 0, i == chunks.size() - 1 ? used : chunk.length).asReadOnlyBuffer());
+        }
+        return contents;
+    }
+
+    long size() {
+        return (long) (chunks.size() - 1) * CHUNK_BYTES + used;
+    }
+
+    long capacity() {
+        long capacity = 0;
+        for (byte[] chunk : chunks) {
+            capacity += chunk.length;
+        }
+        return capacity;
+    }
+
+    long garbage() {
+        return garbage;
+    }
+
+    private long add(byte[] source, int offset, int length) {
+        if (length > LENGTH_MASK) {
+            throw new IllegalArgumentException("Text of " + length + " bytes does not fit in an arena chunk");
+        }
+        ensureCapacity(length);
+        int last = chunks.size() - 1;
+        System.arraycopy(source, offset, chunks.get(last), used, length);
+        long ref = ((long) last * CHUNK_BYTES + used) << LENGTH_BITS | length;
+        used += length;
+        return ref;
+    }
+
+    // Grows the last chunk geometrically up to CHUNK_BYTES, then moves on to a new one
+    private void ensureCapacity(int extra) {
+        int last = chunks.size() - 1;
+        byte[] chunk = chunks.get(last);
+        long needed = (long) used + extra;
+        if (needed <= chunk.length) {
+            return;
+        }
+        if (needed <= CHUNK_BYTES) {
+            chunks.set(last, Arrays.copyOf(chunk, (int) Math.min(CHUNK_BYTES, Math.max(needed, 2L * chunk.length))));
+            return;
+        }
+        if (size() + extra > MAX_SIZE) {
+            throw new IllegalStateException("Text arena is full (" + size() + " bytes)");
+        }
+        if (chunk.length < CHUNK_BYTES) {
+            chunk = Arrays.copyOf(chunk, CHUNK_BYTES);
+            chunks.set(last, chunk);
+        }
+        garbage += CHUNK_BYTES - used;
+        chunks.add(new byte[Math.max(extra, 16)]);
+        used = 0;
+    }
+
+    private static int chunk(long ref) {
+        return (int) ((ref >>> LENGTH_BITS) / CHUNK_BYTES);
+    }
+
+    private static int position(long ref) {
+        return (int) ((ref >>> LENGTH_BITS) % CHUNK_BYTES);
+    }
+
+    private static int length(long ref) {
+        return (int) (ref & LENGTH_MASK);
+    }
+}
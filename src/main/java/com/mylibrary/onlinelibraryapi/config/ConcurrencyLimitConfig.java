@@ -0,0 +1,28 @@
+package com.mylibrary.onlinelibraryapi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.limit.ConcurrencyLimitFilter;
+import com.mylibrary.onlinelibraryapi.limit.ConcurrencyLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ConcurrencyLimitConfig {
+
+    // Right after the request metrics, so shed requests are still counted, and before security and the controllers
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ConcurrencyLimits limits, ObjectMapper objectMapper,
+            @Value("${library.limits.enabled:true}") boolean enabled) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limits, objectMapper));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mylibrary.onlinelibraryapi.config;
+
+import com.mylibrary.onlinelibraryapi.metrics.QueryCounters;
+import com.mylibrary.onlinelibraryapi.metrics.RequestMetricsFilter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class MetricsConfig {
+
+    // Makes @Timed work on service methods
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Lets Hibernate report statements and loaded rows to the per-request metrics
+    @Bean
+    public HibernatePropertiesCustomizer queryCountersCustomizer() {
+        QueryCounters queryCounters = new QueryCounters();
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryCounters);
+            properties.put(AvailableSettings.INTERCEPTOR, queryCounters);
+        };
+    }
+
+    // Servlet stack only; the reactive profile relies on the standard http.server.requests metrics
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RequestMetricsFilter> registration =
+                new FilterRegistrationBean<>(new RequestMetricsFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
@@ -0,0 +1,40 @@
+package com.mylibrary.onlinelibraryapi.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class OpenAiConfig {
+
+    // One shared client (and connection pool) for every OpenAI call
+    @Bean
+    public WebClient openAiWebClient(WebClient.Builder builder,
+                                     @Value("${openai.api.url}") String url,
+                                     @Value("${openai.api.key}") String apiKey,
+                                     @Value("${openai.client.max-connections:50}") int maxConnections,
+                                     @Value("${openai.client.connect-timeout:5s}") Duration connectTimeout,
+                                     @Value("${openai.client.response-timeout:30s}") Duration responseTimeout) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("openai")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(connectTimeout)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+        return builder
+                .baseUrl(url)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -1,120 +1,332 @@
 package com.mylibrary.onlinelibraryapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.mylibrary.onlinelibraryapi.cache.BookJsonCache;
 import com.mylibrary.onlinelibraryapi.exception.CustomException;
 import com.mylibrary.onlinelibraryapi.exception.NotFoundException;
+import com.mylibrary.onlinelibraryapi.exception.PreconditionFailedException;
+import com.mylibrary.onlinelibraryapi.importer.BookImportService;
+import com.mylibrary.onlinelibraryapi.importer.ImportFormat;
+import com.mylibrary.onlinelibraryapi.importer.ImportSummary;
 import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookField;
+import com.mylibrary.onlinelibraryapi.model.BookSelection;
+import com.mylibrary.onlinelibraryapi.model.BulkUpdateRequest;
+import com.mylibrary.onlinelibraryapi.search.BookFacets;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import com.mylibrary.onlinelibraryapi.service.BookChangeLog;
+import com.mylibrary.onlinelibraryapi.service.BookInsightsPrecomputer;
+import com.mylibrary.onlinelibraryapi.service.BookInsightsService;
 import com.mylibrary.onlinelibraryapi.service.BookService;
+import com.mylibrary.onlinelibraryapi.service.CatalogVersion;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/books")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // the reactive profile serves BookRoutes
 public class BookController {
-    private final BookService bookService;
 
-    @Value("${openai.api.key}") // Inject API Key from properties
-    private String openAiApiKey;
+    private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookInsightsService bookInsightsService;
+    private final BookInsightsPrecomputer bookInsightsPrecomputer;
+    private final CatalogVersion catalogVersion;
+    private final BookChangeLog bookChangeLog;
+    private final BookJsonCache bookJsonCache;
+    private final ObjectMapper objectMapper;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookImportService bookImportService,
+                          BookInsightsService bookInsightsService, BookInsightsPrecomputer bookInsightsPrecomputer,
+                          CatalogVersion catalogVersion, BookChangeLog bookChangeLog, BookJsonCache bookJsonCache,
+                          ObjectMapper objectMapper) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookInsightsService = bookInsightsService;
+        this.bookInsightsPrecomputer = bookInsightsPrecomputer;
+        this.catalogVersion = catalogVersion;
+        this.bookChangeLog = bookChangeLog;
+        this.bookJsonCache = bookJsonCache;
+        this.objectMapper = objectMapper;
     }
 
     // Create a New Book
     @PostMapping
     public ResponseEntity<?> createBook(@Valid @RequestBody Book book) {
-        if (bookService.doesBookExistByIsbn(book.getIsbn())) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(bookService.createBook(book));
+        } catch (DataIntegrityViolationException e) {
+            // ISBN is the only unique column
             throw new CustomException(Map.of("isbn", "A book with this ISBN already exists"));
         }
-        return ResponseEntity.status(HttpStatus.CREATED).body(bookService.createBook(book));
     }
 
-    // Retrieve All Books
-    @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        return ResponseEntity.ok(bookService.getAllBooks());
+    // Bulk import books from an NDJSON or CSV body.
+    // Rejected rows are streamed back as NDJSON while the import runs, followed by a summary line.
+    @PostMapping(value = "/bulk", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE},
+            produces = ImportFormat.NDJSON_VALUE)
+    public void importBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(MediaType.parseMediaType(request.getContentType()));
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(ImportFormat.NDJSON_VALUE);
+
+        try (SequenceWriter report = objectMapper.writer().withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            ImportSummary summary = bookImportService.importBooks(request.getReader(), format, error -> {
+                try {
+                    report.write(error);
+                    report.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            report.write(summary);
+        }
     }
 
-    // Retrieve a Single Book by ID
-    @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
-        Optional<Book> currentBookOptional = bookService.getBookById(id);
-        if (currentBookOptional.isEmpty()) {
-            throw new NotFoundException(Map.of("error", String.format("Book with id %d not found", id)));
+    // Retrieve Books one keyset page at a time; the token for the next page is sent back in a header.
+    // Pages carry the catalog-wide ETag, so unchanged pages come back as 304.
+    // With ?fields= only those attributes (plus the id) are selected from the database and returned.
+    // Whole books are written from their cached JSON (see BookJsonCache).
+    @GetMapping
+    public ResponseEntity<?> getAllBooks(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String fields,
+                                               WebRequest webRequest) {
+        int pageSize = limit == null ? BookRequests.DEFAULT_PAGE_SIZE : limit;
+        BookRequests.validatePageSize("limit", pageSize);
+        Long afterId = after == null ? null : ContinuationToken.decode(after, "after");
+        Set<BookField> selected = fields == null ? null : FieldSelection.parse(fields, "fields");
+
+        // Nothing changed since the client's copy: answer from the catalog change counter without querying
+        CatalogVersion.Snapshot catalog = catalogVersion.current();
+        if (webRequest.checkNotModified(catalog.etag())) {
+            return null;
         }
 
-        return bookService.getBookById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        // Fetch one extra row so we know whether another page exists
+        if (selected == null) {
+            return page(bookService.getBooksAfter(afterId, pageSize + 1), pageSize, Book::getId, this::toJson,
+                    catalog);
+        }
+        return page(bookService.getBookFieldsAfter(selected, afterId, pageSize + 1), pageSize,
+                row -> (Long) row.get(BookField.ID.property()), Function.identity(), catalog);
     }
 
-    // Update an Existing Book
-    @PutMapping("/{id}")
-    public ResponseEntity<Book> updateBook(@PathVariable Long id, @RequestBody Book updatedBook) {
-        Optional<Book> currentBookOptional = bookService.getBookById(id);
-        if (currentBookOptional.isEmpty()) {
-            throw new NotFoundException(Map.of("error", String.format("Book with id %d not found", id)));
+    private <T> ResponseEntity<?> page(List<T> rows, int pageSize, Function<T, Long> idOf,
+                                       Function<List<T>, ?> toBody, CatalogVersion.Snapshot catalog) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok().eTag(catalog.etag()).body(toBody.apply(rows));
         }
 
-        Book currentBook = currentBookOptional.get();
+        List<T> page = rows.subList(0, pageSize);
+        String nextToken = ContinuationToken.encode(idOf.apply(page.get(pageSize - 1)));
+        String nextLink = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", nextToken)
+                .replaceQueryParam("limit", pageSize)
+                .toUriString();
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .header(BookRequests.NEXT_PAGE_HEADER, nextToken)
+                .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"")
+                .body(toBody.apply(page));
+    }
 
-        if (!currentBook.getIsbn().equals(updatedBook.getIsbn()) &&
-                bookService.doesBookExistByIsbn(updatedBook.getIsbn())) {
-            throw new CustomException(Map.of("isbn", "A book with this ISBN already exists"));
+    // Stream the whole catalog as a JSON array, row by row as it comes off the database cursor
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        StreamingResponseBody body = outputStream -> {
+            outputStream.write('[');
+            boolean[] first = {true};
+            bookService.streamAllBooks(book -> {
+                try {
+                    if (!first[0]) {
+                        outputStream.write(',');
+                    }
+                    outputStream.write(bookJsonCache.toJsonUncached(book));
+                    first[0] = false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.write(']');
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Retrieve a Single Book by ID; the ETag is the book's version
+    @GetMapping("/{id}")
+    public ResponseEntity<BookJson> getBookById(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                            String ifNoneMatch) {
+        // A cached book answers a conditional GET without loading or serializing it
+        if (ifNoneMatch != null) {
+            Optional<String> cachedETag = bookService.getCachedVersion(id).map(ETags::of);
+            if (cachedETag.isPresent() && ETags.noneMatchHits(ifNoneMatch, cachedETag.get())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cachedETag.get()).build();
+            }
         }
+        // Otherwise Spring answers 304 itself when the loaded book's ETag matches
+        return bookService.getBookById(id)
+                .map(book -> ResponseEntity.ok().eTag(ETags.of(book.getVersion()))
+                        .body(BookJson.of(bookJsonCache.toJson(book))))
+                .orElseThrow(() -> new NotFoundException(
+                        Map.of("error", String.format("Book with id %d not found", id))));
+    }
 
-        return bookService.updateBook(id, updatedBook)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    // Update an Existing Book (a single UPDATE; no prior lookup).
+    // With If-Match the update only applies if the book is still at that version, otherwise 412.
+    @PutMapping("/{id}")
+    public ResponseEntity<Book> updateBook(@PathVariable Long id, @RequestBody Book updatedBook,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                           String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch);
+        try {
+            Book book = bookService.updateBook(id, updatedBook, expectedVersion)
+                    .orElseThrow(() -> new NotFoundException(
+                            Map.of("error", String.format("Book with id %d not found", id))));
+            return ResponseEntity.ok().eTag(ETags.of(book.getVersion())).body(book);
+        } catch (DataIntegrityViolationException e) {
+            // ISBN is the only unique column
+            throw new CustomException(Map.of("isbn", "A book with this ISBN already exists"));
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException(Map.of("error", "If-Match does not match the current version"));
+        }
     }
 
-    // Delete a Book
+    // Delete a Book (a single DELETE; no prior lookup)
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteBook(@PathVariable Long id) {
-        Optional<Book> currentBookOptional = bookService.getBookById(id);
-        if (currentBookOptional.isEmpty()) {
+        if (!bookService.deleteBook(id)) {
             throw new NotFoundException(Map.of("error", String.format("Book with id %d not found", id)));
         }
-
-        bookService.deleteBook(id);
         return ResponseEntity.noContent().build();
     }
 
-    // Search for Books
+    // Update every selected book (by ids and/or author/year filter) in set-based chunks
+    @PatchMapping("/bulk")
+    public ResponseEntity<Map<String, Long>> updateBooks(@Valid @RequestBody BulkUpdateRequest request) {
+        return ResponseEntity.ok(Map.of("updated", bookService.updateBooks(request.getWhere(), request.getSet())));
+    }
+
+    // Delete every selected book (by ids and/or author/year filter) in set-based chunks
+    @DeleteMapping("/bulk")
+    public ResponseEntity<Map<String, Long>> deleteBooks(@Valid @RequestBody BookSelection selection) {
+        return ResponseEntity.ok(Map.of("deleted", bookService.deleteBooks(selection)));
+    }
+
+    // Search for Books (substring match on title/author, all-words match on q), best matches first.
+    // mode=prefix matches the start of title/author instead, through indexed columns, in alphabetical order.
+    // ?fields= narrows the returned (and selected) attributes as for GET /books.
+    // In contains mode a title or author of at least 3 characters, or a word in q, has to narrow the search down.
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam(required = false) String title,
-                                                  @RequestParam(required = false) String author) {
-        return ResponseEntity.ok(bookService.searchBooks(title, author));
+    public ResponseEntity<?> searchBooks(@RequestParam(required = false) String title,
+                                               @RequestParam(required = false) String author,
+                                               @RequestParam(required = false) String q,
+                                               @RequestParam(defaultValue = "contains") String mode,
+                                               @RequestParam(required = false) String fields,
+                                               @RequestParam(defaultValue = "0") int page,
+                                               @RequestParam(defaultValue = "" + BookRequests.DEFAULT_PAGE_SIZE)
+                                               int size) {
+        SearchMode searchMode = BookRequests.validateSearch(title, author, q, mode, page, size);
+        if (fields != null) {
+            Set<BookField> selected = FieldSelection.parse(fields, "fields");
+            return ResponseEntity.ok(bookService.searchBookFields(selected, searchMode, title, author, q, page, size));
+        }
+        return ResponseEntity.ok(toJson(bookService.searchBooks(searchMode, title, author, q, page, size)));
     }
 
-    // TODO: not working
-    @GetMapping("/{id}/ai-insights")
-    public ResponseEntity<String> getAiInsights(@PathVariable Long id) {
-        Optional<Book> bookOptional = bookService.getBookById(id);
-        if (bookOptional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    // Book counts per author and per publication decade, optionally narrowed by an exact author and/or a decade
+    // (e.g. 1930). Facets only change with the catalog, so they share its ETag.
+    @GetMapping("/facets")
+    public ResponseEntity<BookFacets.Facets> getFacets(@RequestParam(required = false) String author,
+                                                       @RequestParam(required = false) Integer decade,
+                                                       @RequestParam(defaultValue = "20") int limit,
+                                                       WebRequest webRequest) {
+        BookRequests.validatePageSize("limit", limit);
+        if (decade != null && decade != BookFacets.decadeOf(decade)) {
+            throw new CustomException(Map.of("decade", "Decade must be a multiple of 10"));
+        }
+        CatalogVersion.Snapshot catalog = catalogVersion.current();
+        if (webRequest.checkNotModified(catalog.etag())) {
+            return null;
         }
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .body(bookService.getFacets(author, decade, limit));
+    }
+
+    // Changes after sequence `since`, oldest first, for incremental sync: continue from the last sequence received.
+    // Created and updated entries carry the book as it is now.
+    @GetMapping(value = "/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BookChange>> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                       @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? BookRequests.DEFAULT_PAGE_SIZE : limit;
+        BookRequests.validatePageSize("limit", pageSize);
+        if (since < 0) {
+            throw new CustomException(Map.of("since", "Since cannot be negative"));
+        }
+        List<BookChange> changes = bookChangeLog.changesSince(since, pageSize + 1);
+        if (changes.size() <= pageSize) {
+            return ResponseEntity.ok(changes);
+        }
+        List<BookChange> page = changes.subList(0, pageSize);
+        String nextLink = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("since", page.get(pageSize - 1).sequence())
+                .replaceQueryParam("limit", pageSize)
+                .toUriString();
+        return ResponseEntity.ok().header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"").body(page);
+    }
 
-        Book book = bookOptional.get();
-        String prompt = "Generate a catchy tagline for this book: " + book.getTitle() + " by " + book.getAuthor()
-                + ". Description: " + book.getDescription();
+    // The same changes live, as Server-Sent Events (see ChangeEvents), resuming after Last-Event-ID or ?since=
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamChanges(
+            @RequestHeader(value = ChangeEvents.LAST_EVENT_ID, required = false) Long lastEventId,
+            @RequestParam(required = false) Long since) {
+        return ChangeEvents.of(bookChangeLog.subscribe(lastEventId != null ? lastEventId : since));
+    }
+
+    // Progress of the background AI insight precompute job
+    @GetMapping("/ai-insights/progress")
+    public ResponseEntity<BookInsightsPrecomputer.Progress> getAiInsightsProgress() {
+        return ResponseEntity.ok(bookInsightsPrecomputer.getProgress());
+    }
 
-        WebClient webClient = WebClient.create("https://api.openai.com/v1/chat/completions");
-        String aiResponse = webClient.post()
-                .header("Authorization", "Bearer " + openAiApiKey)
-                .bodyValue("{\"model\":\"gpt-4\",\"messages\":[{\"role\":\"user\",\"content\":\"" + prompt + "\"}]}")
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
+    // Generate (or reuse) an AI tagline for a book without holding a request thread while OpenAI answers
+    @GetMapping("/{id}/ai-insights")
+    public Mono<ResponseEntity<String>> getAiInsights(@PathVariable Long id) {
+        Book book = bookService.getBookById(id)
+                .orElseThrow(() -> new NotFoundException(Map.of("error", String.format("Book with id %d not found", id))));
+        return bookInsightsService.getTagline(book).map(ResponseEntity::ok);
+    }
 
-        return ResponseEntity.ok(aiResponse);
+    private BookJson toJson(List<Book> books) {
+        return BookJson.array(books.stream().map(bookJsonCache::toJson).toList());
     }
 
 }
\ No newline at end of file
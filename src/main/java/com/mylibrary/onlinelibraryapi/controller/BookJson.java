@@ -0,0 +1,24 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import java.util.List;
+
+// Response body of books already serialized to JSON (see BookJsonCache): a single book or an array of them.
+// Written by BookJsonMessageConverter, which copies the fragments out as they are.
+public record BookJson(List<byte[]> fragments, boolean array) {
+
+    public static BookJson of(byte[] book) {
+        return new BookJson(List.of(book), false);
+    }
+
+    public static BookJson array(List<byte[]> books) {
+        return new BookJson(books, true);
+    }
+
+    public long length() {
+        long length = array ? 2 + Math.max(0, fragments.size() - 1) : 0;
+        for (byte[] fragment : fragments) {
+            length += fragment.length;
+        }
+        return length;
+    }
+}
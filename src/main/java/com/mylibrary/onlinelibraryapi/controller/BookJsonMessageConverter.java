@@ -0,0 +1,62 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Writes BookJson bodies by concatenating their fragments, with no object mapping.
+// Being a converter bean, Spring Boot puts it ahead of the Jackson converter.
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BookJsonMessageConverter extends AbstractHttpMessageConverter<BookJson> {
+
+    public BookJsonMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookJson.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected BookJson readInternal(Class<? extends BookJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Book JSON is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(BookJson books, MediaType contentType) {
+        return books.length();
+    }
+
+    @Override
+    protected void writeInternal(BookJson books, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        if (books.array()) {
+            body.write('[');
+        }
+        boolean first = true;
+        for (byte[] fragment : books.fragments()) {
+            if (!first) {
+                body.write(',');
+            }
+            body.write(fragment);
+            first = false;
+        }
+        if (books.array()) {
+            body.write(']');
+        }
+    }
+}
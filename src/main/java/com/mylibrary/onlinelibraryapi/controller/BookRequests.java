@@ -0,0 +1,49 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import com.mylibrary.onlinelibraryapi.exception.CustomException;
+import com.mylibrary.onlinelibraryapi.search.BookSearchIndex;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.search.SearchQuery;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+// Paging defaults and parameter checks shared by BookController and the reactive BookHandler, so both stacks answer
+// a request the same way, error bodies included
+public final class BookRequests {
+    public static final String NEXT_PAGE_HEADER = "X-Next-Page-Token";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private BookRequests() {
+    }
+
+    public static void validatePageSize(String param, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new CustomException(Map.of(param,
+                    String.format("%s must be between 1 and %d", StringUtils.capitalize(param), MAX_PAGE_SIZE)));
+        }
+    }
+
+    // Checks the parameters of GET /books/search and returns the search mode they ask for
+    public static SearchMode validateSearch(String title, String author, String q, String mode, int page, int size) {
+        if (page < 0) {
+            throw new CustomException(Map.of("page", "Page cannot be negative"));
+        }
+        validatePageSize("size", size);
+        SearchMode searchMode = SearchMode.fromParam(mode).orElseThrow(() ->
+                new CustomException(Map.of("mode", "Mode must be prefix or contains")));
+        if (searchMode == SearchMode.PREFIX) {
+            if (q != null) {
+                throw new CustomException(Map.of("q", "q cannot be combined with mode=prefix"));
+            }
+            if (!StringUtils.hasText(title) && !StringUtils.hasText(author)) {
+                throw new CustomException(Map.of("mode", "Prefix search needs a title or an author"));
+            }
+        } else if (!BookSearchIndex.isSearchable(new SearchQuery(title, author, q))) {
+            throw new CustomException(Map.of("q",
+                    "Search needs a title or author of at least 3 characters, or a word"));
+        }
+        return searchMode;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+// Server-Sent Events framing of the change feed, shared by both web stacks
+public final class ChangeEvents {
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private ChangeEvents() {
+    }
+
+    /**
+     * id = sequence, event = created/updated/deleted, data = the BookChange.
+     * Comments keep idle connections (and the proxies in between) alive.
+     */
+    public static Flux<ServerSentEvent<Object>> of(Flux<BookChange> changes) {
+        Flux<ServerSentEvent<Object>> events = changes.map(change -> ServerSentEvent.builder()
+                .id(Long.toString(change.sequence()))
+                .event(change.type().name().toLowerCase())
+                .data((Object) change)
+                .build());
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(HEARTBEAT)
+                .map(tick -> ServerSentEvent.builder().comment("keep-alive").build());
+        // Heartbeats stop with the changes, e.g. when a lagging subscriber is cut off
+        return events.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.then())));
+    }
+}
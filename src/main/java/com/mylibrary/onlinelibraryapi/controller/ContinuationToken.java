@@ -0,0 +1,33 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import com.mylibrary.onlinelibraryapi.exception.CustomException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+// Opaque keyset cursor handed to clients; it only wraps the last id they have seen
+public final class ContinuationToken {
+    private static final String PREFIX = "id:";
+
+    private ContinuationToken() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // `param` names the request parameter in the error response
+    public static long decode(String token, String param) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (decoded.startsWith(PREFIX)) {
+                return Long.parseLong(decoded.substring(PREFIX.length()));
+            }
+        } catch (IllegalArgumentException ignored) {
+            // NumberFormatException is an IllegalArgumentException too
+        }
+        throw new CustomException(Map.of(param, "Invalid continuation token"));
+    }
+}
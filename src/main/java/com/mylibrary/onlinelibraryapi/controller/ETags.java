@@ -0,0 +1,47 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import com.mylibrary.onlinelibraryapi.exception.PreconditionFailedException;
+
+import java.util.Map;
+
+// Strong ETags for single books, derived from their version: "<version>"
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // If-None-Match uses weak comparison, so W/"3" matches "3"
+    public static boolean noneMatchHits(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The version an If-Match header asks for; null for "*" (any version, the book just has to exist)
+    public static Long expectedVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // falls through: not one of our tags
+            }
+        }
+        // Weak tags, lists and foreign tags can never strongly match a book's current tag
+        throw new PreconditionFailedException(Map.of("error", "If-Match does not match the current version"));
+    }
+}
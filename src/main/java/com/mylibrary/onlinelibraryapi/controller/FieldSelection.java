@@ -0,0 +1,29 @@
+package com.mylibrary.onlinelibraryapi.controller;
+
+import com.mylibrary.onlinelibraryapi.exception.CustomException;
+import com.mylibrary.onlinelibraryapi.model.BookField;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+// Parses the comma-separated ?fields= parameter into the book attributes to select and return
+public final class FieldSelection {
+
+    private FieldSelection() {
+    }
+
+    // The id is always included, it is the key for paging and for follow-up requests
+    public static Set<BookField> parse(String fields, String param) {
+        Set<BookField> selected = EnumSet.of(BookField.ID);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            if (property.isEmpty()) {
+                continue;
+            }
+            selected.add(BookField.fromProperty(property).orElseThrow(() ->
+                    new CustomException(Map.of(param, "Unknown field: " + property))));
+        }
+        return selected;
+    }
+}
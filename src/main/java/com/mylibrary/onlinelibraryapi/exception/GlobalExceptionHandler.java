@@ -1,5 +1,6 @@
 package com.mylibrary.onlinelibraryapi.exception;
 
+import jakarta.validation.ConstraintViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -23,6 +24,16 @@ public class GlobalExceptionHandler {
         return errors;
     }
 
+    // Handles validation errors raised in the service layer (e.g., an invalid book on update)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ConstraintViolationException.class)
+    public Map<String, String> handleConstraintViolations(ConstraintViolationException ex) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getConstraintViolations().forEach(violation ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return errors;
+    }
+
     // Handles non existing validation errors (e.g., id does not exist)
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<Map<String, String>> handleFieldValidationExceptions(NotFoundException ex) {
@@ -35,4 +46,16 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getErrors());
     }
 
+    // Handles failed conditional requests (e.g., If-Match on a book that changed in the meantime)
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Map<String, String>> handlePreconditionFailedExceptions(PreconditionFailedException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getErrors());
+    }
+
+    // Handles failing dependencies (e.g., OpenAI timing out or over the concurrency limit)
+    @ExceptionHandler(UpstreamException.class)
+    public ResponseEntity<Map<String, String>> handleUpstreamExceptions(UpstreamException ex) {
+        return ResponseEntity.status(ex.getStatus()).body(ex.getErrors());
+    }
+
 }
\ No newline at end of file
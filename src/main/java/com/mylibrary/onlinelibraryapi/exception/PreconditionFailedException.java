@@ -0,0 +1,16 @@
+package com.mylibrary.onlinelibraryapi.exception;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+public class PreconditionFailedException extends RuntimeException {
+    private final Map<String, String> errors;
+
+    public PreconditionFailedException(Map<String, String> errors) {
+        super("Precondition failed");
+        this.errors = errors;
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.mylibrary.onlinelibraryapi.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+
+// A dependency (e.g. OpenAI) failed, timed out or is over capacity; status says which
+@Getter
+public class UpstreamException extends RuntimeException {
+    private final HttpStatus status;
+    private final Map<String, String> errors;
+
+    public UpstreamException(HttpStatus status, Map<String, String> errors) {
+        super("Upstream call failed");
+        this.status = status;
+        this.errors = errors;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streams books from an NDJSON or CSV body into the database in chunks.
+ * Every row is validated with the Book constraints, ISBNs are checked against the database once per
+ * chunk, and each chunk is inserted in its own batched transaction. Should a concurrent writer take one of
+ * the chunk's ISBNs before the insert, only that row is rejected and the rest of the chunk retried.
+ * Rejected rows are handed to the error consumer as soon as their chunk is done, so nothing but the
+ * current chunk is held in memory.
+ */
+@Service
+@Timed(value = "library.service", description = "Service method timings, tagged with class and method")
+public class BookImportService {
+    private static final String DUPLICATE_ISBN = "A book with this ISBN already exists";
+
+    private final BookService bookService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BookImportService(BookService bookService, Validator validator, ObjectMapper objectMapper,
+                             @Value("${library.import.chunk-size:500}") int chunkSize) {
+        this.bookService = bookService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportSummary importBooks(BufferedReader input, ImportFormat format, Consumer<ImportError> errors)
+            throws IOException {
+        BookRowReader reader = format.reader(input, objectMapper);
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+        long imported = 0;
+        long rejected = 0;
+
+        ParsedRow row;
+        while ((row = reader.next()) != null) {
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                ChunkResult result = importChunk(chunk, errors);
+                imported += result.imported();
+                rejected += result.rejected();
+                chunk.clear();
+            }
+        }
+        ChunkResult result = importChunk(chunk, errors);
+        return new ImportSummary(imported + result.imported(), rejected + result.rejected());
+    }
+
+    private record ChunkResult(long imported, long rejected) {
+    }
+
+    private ChunkResult importChunk(List<ParsedRow> chunk, Consumer<ImportError> errors) {
+        List<ImportError> rejectedRows = new ArrayList<>();
+        List<ParsedRow> validRows = new ArrayList<>();
+        for (ParsedRow row : chunk) {
+            Map<String, String> rowErrors = row.book() == null ? row.errors() : validate(row.book());
+            if (rowErrors.isEmpty()) {
+                validRows.add(row);
+            } else {
+                rejectedRows.add(new ImportError(row.row(), rowErrors));
+            }
+        }
+
+        // One query for the whole chunk, then catch duplicates within the chunk itself
+        Set<String> takenIsbns = new HashSet<>(bookService.findExistingIsbns(
+                validRows.stream().map(row -> row.book().getIsbn()).toList()));
+        List<ParsedRow> acceptedRows = new ArrayList<>(validRows.size());
+        for (ParsedRow row : validRows) {
+            if (takenIsbns.add(row.book().getIsbn())) {
+                acceptedRows.add(row);
+            } else {
+                rejectedRows.add(new ImportError(row.row(), Map.of("isbn", DUPLICATE_ISBN)));
+            }
+        }
+
+        long imported = insert(acceptedRows, rejectedRows);
+        rejectedRows.sort((a, b) -> Long.compare(a.row(), b.row()));
+        rejectedRows.forEach(errors);
+        return new ChunkResult(imported, rejectedRows.size());
+    }
+
+    // Someone else can take an ISBN between the check and the insert, which rolls the whole batch back. The rows
+    // whose ISBN is taken by then are rejected and the rest retried; should the database still refuse the batch
+    // without an ISBN to blame, the rows go in one at a time so only the offending ones are rejected.
+    private long insert(List<ParsedRow> rows, List<ImportError> rejectedRows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            bookService.createBooks(rows.stream().map(row -> unsaved(row.book())).toList());
+            return rows.size();
+        } catch (DataIntegrityViolationException e) {
+            Set<String> takenIsbns = bookService.findExistingIsbns(
+                    rows.stream().map(row -> row.book().getIsbn()).toList());
+            if (!takenIsbns.isEmpty()) {
+                List<ParsedRow> retryRows = new ArrayList<>(rows.size());
+                for (ParsedRow row : rows) {
+                    if (takenIsbns.contains(row.book().getIsbn())) {
+                        rejectedRows.add(new ImportError(row.row(), Map.of("isbn", DUPLICATE_ISBN)));
+                    } else {
+                        retryRows.add(row);
+                    }
+                }
+                return insert(retryRows, rejectedRows);
+            }
+        }
+        long imported = 0;
+        for (ParsedRow row : rows) {
+            try {
+                bookService.createBook(unsaved(row.book()));
+                imported++;
+            } catch (DataIntegrityViolationException e) {
+                rejectedRows.add(new ImportError(row.row(),
+                        Map.of("row", "Rejected by the database: " + e.getMostSpecificCause().getMessage())));
+            }
+        }
+        return imported;
+    }
+
+    // A failed flush leaves the id and version it assigned on the book, which would make it look already saved
+    private static Book unsaved(Book book) {
+        book.setId(null);
+        book.setVersion(null);
+        return book;
+    }
+
+    private Map<String, String> validate(Book book) {
+        Set<ConstraintViolation<Book>> violations = validator.validate(book);
+        if (violations.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> errors = new HashMap<>();
+        violations.forEach(violation ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return errors;
+    }
+}
@@ -0,0 +1,10 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import java.io.IOException;
+
+// Pulls books off an import body one row at a time
+interface BookRowReader {
+
+    // Returns null once the input is exhausted
+    ParsedRow next() throws IOException;
+}
@@ -0,0 +1,126 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RFC 4180 style CSV: a header row naming the Book fields (title, author, isbn, publicationYear,
+ * description, in any order), then one book per record. Quoted fields may contain commas,
+ * doubled quotes and line breaks. Rows are numbered by record, the header excluded.
+ */
+class CsvBookReader implements BookRowReader {
+    private static final List<String> COLUMNS = List.of("title", "author", "isbn", "publicationYear", "description");
+
+    private final BufferedReader input;
+    private Map<String, Integer> columnIndexes;
+    private long rowNumber;
+
+    CsvBookReader(BufferedReader input) {
+        this.input = input;
+    }
+
+    @Override
+    public ParsedRow next() throws IOException {
+        if (columnIndexes == null && !readHeader()) {
+            return null;
+        }
+        List<String> record = readRecord();
+        if (record == null) {
+            return null;
+        }
+        rowNumber++;
+
+        Book book = new Book(column(record, "title"), column(record, "author"), column(record, "isbn"),
+                null, column(record, "description"));
+        String year = column(record, "publicationYear");
+        if (year != null) {
+            try {
+                book.setPublicationYear(Integer.valueOf(year.trim()));
+            } catch (NumberFormatException e) {
+                return ParsedRow.failed(rowNumber, Map.of("publicationYear", "Publication year must be a number"));
+            }
+        }
+        return ParsedRow.of(rowNumber, book);
+    }
+
+    private boolean readHeader() throws IOException {
+        List<String> header = readRecord();
+        if (header == null) {
+            return false;
+        }
+        columnIndexes = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim();
+            if (COLUMNS.contains(name)) {
+                columnIndexes.put(name, i);
+            }
+        }
+        return true;
+    }
+
+    private String column(List<String> record, String name) {
+        Integer index = columnIndexes.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    // Returns null at end of input; blank lines between records are skipped
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean sawAnything = false;
+
+        int c;
+        while ((c = input.read()) != -1) {
+            char ch = (char) c;
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else {
+                    input.mark(1);
+                    if (input.read() == '"') {
+                        field.append('"');
+                    } else {
+                        input.reset();
+                        quoted = false;
+                    }
+                }
+            } else if (ch == '"') {
+                quoted = true;
+                sawAnything = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                sawAnything = true;
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r') {
+                    input.mark(1);
+                    if (input.read() != '\n') {
+                        input.reset();
+                    }
+                }
+                if (sawAnything || !field.isEmpty()) {
+                    break;
+                }
+            } else {
+                field.append(ch);
+                sawAnything = true;
+            }
+        }
+        if (c == -1 && !sawAnything && field.isEmpty()) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
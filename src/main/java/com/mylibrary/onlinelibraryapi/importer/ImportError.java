@@ -0,0 +1,7 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import java.util.Map;
+
+// A rejected row, reported with the same field -> message map as the single-book endpoints
+public record ImportError(long row, Map<String, String> errors) {
+}
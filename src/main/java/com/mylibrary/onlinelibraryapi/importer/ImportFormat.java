@@ -0,0 +1,22 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+
+public enum ImportFormat {
+    NDJSON,
+    CSV;
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    public static ImportFormat fromContentType(MediaType contentType) {
+        return MediaType.parseMediaType(CSV_VALUE).isCompatibleWith(contentType) ? CSV : NDJSON;
+    }
+
+    BookRowReader reader(BufferedReader input, ObjectMapper objectMapper) {
+        return this == CSV ? new CsvBookReader(input) : new NdjsonBookReader(input, objectMapper);
+    }
+}
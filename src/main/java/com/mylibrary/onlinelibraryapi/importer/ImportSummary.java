@@ -0,0 +1,4 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+public record ImportSummary(long imported, long rejected) {
+}
@@ -0,0 +1,41 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Map;
+
+// One JSON book per line; blank lines are skipped but still counted
+class NdjsonBookReader implements BookRowReader {
+    private final BufferedReader input;
+    private final ObjectMapper objectMapper;
+    private long lineNumber;
+
+    NdjsonBookReader(BufferedReader input, ObjectMapper objectMapper) {
+        this.input = input;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ParsedRow next() throws IOException {
+        String line;
+        do {
+            line = input.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        try {
+            Book book = objectMapper.readValue(line, Book.class);
+            book.setId(null); // ids are always generated
+            return ParsedRow.of(lineNumber, book);
+        } catch (JsonProcessingException e) {
+            return ParsedRow.failed(lineNumber, Map.of("row", "Malformed JSON"));
+        }
+    }
+}
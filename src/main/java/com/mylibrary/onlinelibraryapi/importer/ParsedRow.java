@@ -0,0 +1,17 @@
+package com.mylibrary.onlinelibraryapi.importer;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.util.Map;
+
+// One input row: either a book or the reason it could not be read
+record ParsedRow(long row, Book book, Map<String, String> errors) {
+
+    static ParsedRow of(long row, Book book) {
+        return new ParsedRow(row, book, Map.of());
+    }
+
+    static ParsedRow failed(long row, Map<String, String> errors) {
+        return new ParsedRow(row, null, errors);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mylibrary.onlinelibraryapi.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows observed latency, in the style of Netflix's gradient limiter.
+ * Each completed request updates a recent (short) and a baseline (long) moving average of its latency.
+ * The limit is scaled by tolerance × long / short, clamped to [0.5, 1], plus sqrt(limit) of room to grow:
+ * it climbs while latency holds and shrinks as soon as requests start queueing somewhere (a slow database,
+ * a slow upstream). A server error cuts it multiplicatively instead, AIMD style.
+ * The limit only grows while at least half of it is in use, so an idle class does not pile up headroom it has
+ * never been tested at.
+ */
+public final class AdaptiveLimit {
+    private static final double SHORT_WEIGHT = 0.2; // roughly the last 10 requests
+    private static final double LONG_WEIGHT = 0.01; // roughly the last 200 requests
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double shortLatency; // nanos, guarded by this
+    private double longLatency;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    // Takes a slot if fewer than share × limit (but at least one) are in use
+    public boolean tryAcquire(double share) {
+        int allowed = allowed(share);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean hasRoom(double share) {
+        return inFlight.get() < allowed(share);
+    }
+
+    // Gives the slot back and feeds the request's latency, or its failure, into the limit
+    public void release(long latencyNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        onSample(latencyNanos, current, dropped);
+    }
+
+    // One completed request, with the number in flight (itself included) when it completed
+    public synchronized void onSample(long latencyNanos, int inFlightAtCompletion, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        shortLatency += SHORT_WEIGHT * (latencyNanos - shortLatency);
+        longLatency += LONG_WEIGHT * (latencyNanos - longLatency);
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95; // latency is back to normal after a spike; let the baseline catch up
+        }
+        if (inFlightAtCompletion < limit / 2) {
+            return;
+        }
+        double gradient = Math.clamp(tolerance * longLatency / Math.max(shortLatency, 1), 0.5, 1.0);
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.clamp(limit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private int allowed(double share) {
+        return Math.max(1, (int) (limit * share));
+    }
+}
@@ -0,0 +1,122 @@
+package com.mylibrary.onlinelibraryapi.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Sheds /books requests over their endpoint class's concurrency limit (see ConcurrencyLimits) with an immediate
+ * 503 and Retry-After, rather than letting them queue for a thread or a connection until they time out.
+ * Async requests (AI insights) hold their slot until the response completes.
+ * Open-ended requests are not limited: the streamed catalog, the live change feed and bulk operations, whose
+ * duration depends on their payload rather than on how loaded the server is.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Pattern BOOK_BY_ID = Pattern.compile("/books/\\d+");
+    private static final Pattern AI_INSIGHTS = Pattern.compile("/books/\\d+/ai-insights");
+
+    private final ConcurrencyLimits limits;
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimits limits, ObjectMapper objectMapper) {
+        this.limits = limits;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        EndpointClass endpoint = classify(request, path);
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean critical = endpoint == EndpointClass.CRUD && BOOK_BY_ID.matcher(path).matches()
+                && (request.getMethod().equals("GET") || request.getMethod().equals("HEAD"));
+        Optional<ConcurrencyLimits.Permit> acquired = limits.tryAcquire(endpoint, critical);
+        if (acquired.isEmpty()) {
+            reject(response, endpoint);
+            return;
+        }
+
+        ConcurrencyLimits.Permit permit = acquired.get();
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            permit.release(true);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    permit.release(isServerError((HttpServletResponse) event.getSuppliedResponse()));
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    permit.release(true);
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    permit.release(true);
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            permit.release(isServerError(response));
+        }
+    }
+
+    // The limited class of the request, or null when it is not limited
+    private static EndpointClass classify(HttpServletRequest request, String path) {
+        if (!path.equals("/books") && !path.startsWith("/books/")) {
+            return null;
+        }
+        if (path.equals("/books/stream") || path.equals("/books/bulk")) {
+            return null;
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (path.equals("/books/changes") && accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)) {
+            return null;
+        }
+        if (path.equals("/books/search")) {
+            return EndpointClass.SEARCH;
+        }
+        if (AI_INSIGHTS.matcher(path).matches()) {
+            return EndpointClass.AI_INSIGHTS;
+        }
+        return EndpointClass.CRUD;
+    }
+
+    private void reject(HttpServletResponse response, EndpointClass endpoint) throws IOException {
+        long seconds = Math.max(1, (limits.retryAfter().toMillis() + 999) / 1000);
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error",
+                String.format("Too many concurrent %s requests, retry in %d s", endpoint.tag(), seconds)));
+    }
+
+    private static boolean isServerError(HttpServletResponse response) {
+        return response.getStatus() >= 500;
+    }
+}
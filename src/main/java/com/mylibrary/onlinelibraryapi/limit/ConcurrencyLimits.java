@@ -0,0 +1,98 @@
+package com.mylibrary.onlinelibraryapi.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One adaptive limit (see AdaptiveLimit) per endpoint class, with priorities:
+ * - critical requests (GET /books/{id}) may use the whole CRUD limit, other requests only the part of it that is
+ *   not reserved for them (library.limits.critical-reserve)
+ * - searches and AI insights are shed as soon as CRUD has no room left outside that reserve, since they compete
+ *   for the same database: the expensive classes give way first and the cheap lookups keep flowing
+ * Published as library.limits.limit, library.limits.in-flight and library.limits.rejected, tagged by endpoint.
+ */
+@Component
+public class ConcurrencyLimits {
+    private final Map<EndpointClass, AdaptiveLimit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+    private final double normalShare;
+    private final Duration retryAfter;
+
+    // A slot taken from one of the limits; released once, with the request's outcome
+    public static final class Permit {
+        private final AdaptiveLimit limit;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdaptiveLimit limit) {
+            this.limit = limit;
+        }
+
+        // `dropped` marks a request that failed on the server side, which cuts the limit
+        public void release(boolean dropped) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - start, dropped);
+            }
+        }
+    }
+
+    public ConcurrencyLimits(MeterRegistry meterRegistry,
+                             @Value("${library.limits.min:4}") int minLimit,
+                             @Value("${library.limits.tolerance:1.5}") double tolerance,
+                             @Value("${library.limits.critical-reserve:0.2}") double criticalReserve,
+                             @Value("${library.limits.retry-after:1s}") Duration retryAfter,
+                             @Value("${library.limits.crud.initial:50}") int crudInitial,
+                             @Value("${library.limits.crud.max:400}") int crudMax,
+                             @Value("${library.limits.search.initial:20}") int searchInitial,
+                             @Value("${library.limits.search.max:200}") int searchMax,
+                             @Value("${library.limits.ai-insights.initial:20}") int aiInsightsInitial,
+                             @Value("${library.limits.ai-insights.max:50}") int aiInsightsMax) {
+        this.normalShare = 1 - criticalReserve;
+        this.retryAfter = retryAfter;
+        limits.put(EndpointClass.CRUD, new AdaptiveLimit(crudInitial, minLimit, crudMax, tolerance));
+        limits.put(EndpointClass.SEARCH, new AdaptiveLimit(searchInitial, minLimit, searchMax, tolerance));
+        limits.put(EndpointClass.AI_INSIGHTS, new AdaptiveLimit(aiInsightsInitial, minLimit, aiInsightsMax, tolerance));
+        limits.forEach((endpoint, limit) -> {
+            Gauge.builder("library.limits.limit", limit, AdaptiveLimit::limit)
+                    .description("Current concurrency limit")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry);
+            Gauge.builder("library.limits.in-flight", limit, AdaptiveLimit::inFlight)
+                    .description("Requests holding a slot of the limit")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry);
+            rejections.put(endpoint, Counter.builder("library.limits.rejected")
+                    .description("Requests rejected with 503 for being over the limit")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry));
+        });
+    }
+
+    // A slot for the request, or empty when it should be shed
+    public Optional<Permit> tryAcquire(EndpointClass endpoint, boolean critical) {
+        AdaptiveLimit limit = limits.get(endpoint);
+        boolean crudBusy = endpoint != EndpointClass.CRUD && !limits.get(EndpointClass.CRUD).hasRoom(normalShare);
+        if (crudBusy || !limit.tryAcquire(critical ? 1.0 : normalShare)) {
+            rejections.get(endpoint).increment();
+            return Optional.empty();
+        }
+        return Optional.of(new Permit(limit));
+    }
+
+    public AdaptiveLimit limit(EndpointClass endpoint) {
+        return limits.get(endpoint);
+    }
+
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
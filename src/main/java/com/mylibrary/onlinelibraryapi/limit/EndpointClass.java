@@ -0,0 +1,18 @@
+package com.mylibrary.onlinelibraryapi.limit;
+
+// Groups of books endpoints that get a concurrency limit of their own (see ConcurrencyLimits)
+public enum EndpointClass {
+    CRUD("crud"),
+    SEARCH("search"),
+    AI_INSIGHTS("ai-insights");
+
+    private final String tag;
+
+    EndpointClass(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
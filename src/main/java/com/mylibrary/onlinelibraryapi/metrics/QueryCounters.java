@@ -0,0 +1,55 @@
+package com.mylibrary.onlinelibraryapi.metrics;
+
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+/**
+ * Counts the SQL statements Hibernate prepares and the entities it loads on the current thread.
+ * A batched insert or update is prepared once, so the statement count is the number of database
+ * round trips rather than the number of rows written. Counting only happens between start() and stop().
+ */
+public class QueryCounters implements StatementInspector, Interceptor {
+    private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<>();
+
+    public static final class Counts {
+        private long statements;
+        private long entitiesLoaded;
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getEntitiesLoaded() {
+            return entitiesLoaded;
+        }
+    }
+
+    public static Counts start() {
+        Counts counts = new Counts();
+        COUNTS.set(counts);
+        return counts;
+    }
+
+    public static void stop() {
+        COUNTS.remove();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.statements++;
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.entitiesLoaded++;
+        }
+        return false;
+    }
+}
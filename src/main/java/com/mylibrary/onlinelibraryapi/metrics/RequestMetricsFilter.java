@@ -0,0 +1,167 @@
+package com.mylibrary.onlinelibraryapi.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+/**
+ * Per-request cost breakdown, tagged like http.server.requests (method, uri, status):
+ * - library.request.db.statements: SQL statements (database round trips) issued while handling the request
+ * - library.request.db.entities: entity rows Hibernate loaded
+ * - library.request.response.bytes: serialized response body size
+ * - library.request.allocated.bytes: heap allocated by the request thread
+ * Work handed off to other threads (async requests, streamed responses) is only partially attributed.
+ */
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long allocatedBefore = allocatedBytes();
+        QueryCounters.Counts counts = QueryCounters.start();
+        CountingResponse countingResponse = new CountingResponse(response);
+        try {
+            chain.doFilter(request, countingResponse);
+            countingResponse.flushWriter();
+        } finally {
+            QueryCounters.stop();
+            long allocated = allocatedBytes() - allocatedBefore;
+            String method = request.getMethod();
+            String uri = uri(request);
+            String status = Integer.toString(response.getStatus());
+            summary("library.request.db.statements", "SQL statements per request", method, uri, status)
+                    .record(counts.getStatements());
+            summary("library.request.db.entities", "Entity rows loaded per request", method, uri, status)
+                    .record(counts.getEntitiesLoaded());
+            summary("library.request.response.bytes", "Response body bytes per request", method, uri, status)
+                    .record(countingResponse.bytes);
+            if (allocatedBefore >= 0) {
+                summary("library.request.allocated.bytes", "Heap bytes allocated per request", method, uri, status)
+                        .record(allocated);
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    private DistributionSummary summary(String name, String description, String method, String uri, String status) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(name.endsWith("bytes") ? "bytes" : null)
+                .tags("method", method, "uri", uri, "status", status)
+                .register(meterRegistry);
+    }
+
+    // Same low-cardinality uri tag as http.server.requests: the matched pattern, not the raw path
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long bytes;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytes += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+}
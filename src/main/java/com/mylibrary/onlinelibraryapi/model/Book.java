@@ -1,35 +1,55 @@
 package com.mylibrary.onlinelibraryapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mylibrary.onlinelibraryapi.search.TextNormalizer;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "books")
+@Cacheable // second-level cache candidate, when a profile enables one
+@Table(name = "books", indexes = { // B-tree indexes so prefix searches are range scans
+        @Index(name = "idx_books_normalized_title", columnList = "normalized_title"),
+        @Index(name = "idx_books_normalized_author", columnList = "normalized_author")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @ToString
 public class Book {
+    public static final String ID_SEQUENCE = "books_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // Auto-generated unique ID
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq") // Auto-generated unique ID
+    // pooled so inserts can be batched; BookIdSequence keeps it above ids from before the sequence
+    @SequenceGenerator(name = "book_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false) // nullable concerns the db not the api
@@ -57,6 +77,29 @@ public class Book {
     @Size(max = 1000, message = "Description cannot exceed 1000 characters")
     private String description;
 
+    @Version // bumped on every write; the book's ETag is derived from it
+    @ColumnDefault("0") // rows that predate the column start at version 0
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL) // only a book that has not been saved yet has none
+    private Long version;
+
+    // Case-folded, accent-stripped title and author for indexed prefix search, derived on every write
+    @Column(name = "normalized_title")
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private String normalizedTitle;
+
+    @Column(name = "normalized_author")
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private String normalizedAuthor;
+
+    public Book(Long id, String title, String author, String isbn, Integer publicationYear, String description) {
+        this(title, author, isbn, publicationYear, description);
+        this.id = id;
+    }
+
     public Book(String title, String author, String isbn, Integer publicationYear, String description) {
         this.title = title;
         this.author = author;
@@ -65,4 +108,11 @@ public class Book {
         this.description = description;
     }
 
-}
\ No newline at end of file
+    // Bulk JPQL updates skip this callback, so those queries set the columns themselves
+    @PrePersist
+    @PreUpdate
+    public void updateSearchColumns() {
+        normalizedTitle = TextNormalizer.normalize(title);
+        normalizedAuthor = TextNormalizer.normalize(author);
+    }
+}
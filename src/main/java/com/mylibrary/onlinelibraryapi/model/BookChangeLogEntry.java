@@ -0,0 +1,48 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+// One row of the change log: which book changed how, numbered from book_change_log_seq (see BookChangeLog)
+@Entity
+@Table(name = "book_change_log")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookChangeLogEntry {
+
+    public static final String SEQUENCE = "book_change_log_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "change_log_seq")
+    // one value per change: a pooled block would leave a gap in the log at every restart
+    @SequenceGenerator(name = "change_log_seq", sequenceName = SEQUENCE, allocationSize = 1)
+    private Long sequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private BookChangeEvent.Type type;
+
+    @Column(nullable = false)
+    private Long bookId; // no foreign key: deletes are logged too
+
+    @Column(nullable = false)
+    private Instant changedAt;
+}
@@ -0,0 +1,29 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+// Book attributes a client can ask for with ?fields=; the names match the JSON properties and the entity fields
+public enum BookField {
+    ID("id"),
+    TITLE("title"),
+    AUTHOR("author"),
+    ISBN("isbn"),
+    PUBLICATION_YEAR("publicationYear"),
+    DESCRIPTION("description"),
+    VERSION("version");
+
+    private final String property;
+
+    BookField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    public static Optional<BookField> fromProperty(String property) {
+        return Arrays.stream(values()).filter(field -> field.property.equals(property)).findFirst();
+    }
+}
@@ -0,0 +1,38 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+// Latest AI-generated tagline for a book, tied to the content it was generated from
+@Entity
+@Cacheable // read on every insights call; cached only if the second-level cache is on (application-prod.properties)
+@Table(name = "book_insights")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookInsight {
+
+    @Id
+    private Long bookId; // same id as the book, no foreign key so insights can be written outside its transaction
+
+    @Column(nullable = false, length = 64)
+    private String contentHash; // SHA-256 of the prompt inputs; a different hash means the tagline is stale
+
+    @Column(nullable = false, length = 2000)
+    private String tagline;
+
+    @Column(nullable = false)
+    private Instant generatedAt;
+}
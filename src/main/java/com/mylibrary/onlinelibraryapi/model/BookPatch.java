@@ -0,0 +1,35 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Fields to overwrite in a bulk update; null fields are left unchanged
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPatch {
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "Author cannot be empty")
+    @Size(max = 255, message = "Author name cannot exceed 255 characters")
+    private String author;
+
+    @Min(value = 1450, message = "Publication year must be after 1450")
+    @Max(value = 2050, message = "Publication year must be before 2050")
+    private Integer publicationYear;
+
+    @Size(max = 1000, message = "Description cannot exceed 1000 characters")
+    private String description;
+
+    @AssertTrue(message = "Specify at least one field to update")
+    public boolean isNotEmpty() {
+        return author != null || publicationYear != null || description != null;
+    }
+}
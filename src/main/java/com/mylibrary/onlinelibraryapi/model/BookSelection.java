@@ -0,0 +1,41 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Which books a bulk operation applies to: the given ids and/or everything matching the filter fields
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSelection {
+
+    @Size(max = 100000, message = "Cannot select more than 100000 ids at once")
+    private List<Long> ids;
+
+    private String author; // exact match
+
+    private Integer fromYear; // inclusive
+
+    private Integer toYear; // inclusive
+
+    @AssertTrue(message = "Specify ids or at least one of author, fromYear, toYear")
+    public boolean isRestricted() {
+        return (ids != null && !ids.isEmpty()) || author != null || fromYear != null || toYear != null;
+    }
+
+    @AssertTrue(message = "fromYear cannot be after toYear")
+    public boolean isYearRangeValid() {
+        return fromYear == null || toYear == null || fromYear <= toYear;
+    }
+
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+}
@@ -0,0 +1,23 @@
+package com.mylibrary.onlinelibraryapi.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateRequest {
+
+    @Valid
+    @NotNull(message = "Selection cannot be null")
+    private BookSelection where;
+
+    @Valid
+    @NotNull(message = "Fields to update cannot be null")
+    private BookPatch set;
+}
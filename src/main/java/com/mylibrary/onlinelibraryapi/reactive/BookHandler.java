@@ -0,0 +1,179 @@
+package com.mylibrary.onlinelibraryapi.reactive;
+
+import com.mylibrary.onlinelibraryapi.controller.BookRequests;
+import com.mylibrary.onlinelibraryapi.controller.ChangeEvents;
+import com.mylibrary.onlinelibraryapi.controller.ContinuationToken;
+import com.mylibrary.onlinelibraryapi.controller.ETags;
+import com.mylibrary.onlinelibraryapi.exception.NotFoundException;
+import com.mylibrary.onlinelibraryapi.exception.PreconditionFailedException;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookChangeLog;
+import com.mylibrary.onlinelibraryapi.service.CatalogVersion;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handlers behind BookRoutes, mirroring BookController's CRUD, paging, streaming, search and change feed endpoints
+ * (same parameters, headers, status codes and error bodies).
+ */
+@Component
+@Profile("reactive")
+public class BookHandler {
+    private final ReactiveBookService bookService;
+    private final CatalogVersion catalogVersion;
+    private final BookChangeLog bookChangeLog;
+
+    public BookHandler(ReactiveBookService bookService, CatalogVersion catalogVersion, BookChangeLog bookChangeLog) {
+        this.bookService = bookService;
+        this.catalogVersion = catalogVersion;
+        this.bookChangeLog = bookChangeLog;
+    }
+
+    // Create a New Book
+    public Mono<ServerResponse> createBook(ServerRequest request) {
+        return request.bodyToMono(Book.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .flatMap(bookService::createBook)
+                .flatMap(book -> ServerResponse.status(HttpStatus.CREATED).bodyValue(book));
+    }
+
+    // Retrieve Books one keyset page at a time, as GET /books on the servlet stack
+    public Mono<ServerResponse> getAllBooks(ServerRequest request) {
+        int pageSize = intParam(request, "limit", BookRequests.DEFAULT_PAGE_SIZE);
+        BookRequests.validatePageSize("limit", pageSize);
+        Long afterId = request.queryParam("after").map(token -> ContinuationToken.decode(token, "after")).orElse(null);
+
+        CatalogVersion.Snapshot catalog = catalogVersion.current();
+        return request.checkNotModified(catalog.etag())
+                .switchIfEmpty(Mono.defer(() -> bookService.getBooksAfter(afterId, pageSize + 1)
+                        .collectList()
+                        .flatMap(books -> page(request, books, pageSize, catalog))));
+    }
+
+    private static Mono<ServerResponse> page(ServerRequest request, List<Book> books, int pageSize,
+                                             CatalogVersion.Snapshot catalog) {
+        ServerResponse.BodyBuilder response = ServerResponse.ok()
+                .eTag(catalog.etag());
+        if (books.size() <= pageSize) {
+            return response.bodyValue(books);
+        }
+        List<Book> page = books.subList(0, pageSize);
+        String nextToken = ContinuationToken.encode(page.get(pageSize - 1).getId());
+        String nextLink = request.uriBuilder()
+                .replaceQueryParam("after", nextToken)
+                .replaceQueryParam("limit", pageSize)
+                .build().toString();
+        return response.header(BookRequests.NEXT_PAGE_HEADER, nextToken)
+                .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"")
+                .bodyValue(page);
+    }
+
+    // Stream the whole catalog as a JSON array, or as NDJSON when asked for; rows are read as the client consumes
+    public Mono<ServerResponse> streamAllBooks(ServerRequest request) {
+        MediaType type = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON;
+        return ServerResponse.ok().contentType(type).body(bookService.streamAllBooks(), Book.class);
+    }
+
+    // Live change feed as Server-Sent Events (see ChangeEvents), resuming after Last-Event-ID or ?since=
+    public Mono<ServerResponse> streamChanges(ServerRequest request) {
+        String lastEventId = request.headers().firstHeader(ChangeEvents.LAST_EVENT_ID);
+        String since = lastEventId != null ? lastEventId : request.queryParam("since").orElse(null);
+        Long after;
+        try {
+            after = since == null ? null : Long.valueOf(since);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid sequence: " + since);
+        }
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(ChangeEvents.of(bookChangeLog.subscribe(after)), ServerSentEvent.class);
+    }
+
+    // Retrieve a Book by ID; answers 304 when If-None-Match still matches its version
+    public Mono<ServerResponse> getBookById(ServerRequest request) {
+        long id = id(request);
+        String ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+        return bookService.getBookById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .flatMap(book -> {
+                    String etag = ETags.of(book.getVersion());
+                    if (ETags.noneMatchHits(ifNoneMatch, etag)) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                    }
+                    return ServerResponse.ok().eTag(etag).bodyValue(book);
+                });
+    }
+
+    // Update a Book; If-Match makes it conditional on the version the client has seen
+    public Mono<ServerResponse> updateBook(ServerRequest request) {
+        long id = id(request);
+        String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        Long expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch);
+        return request.bodyToMono(Book.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+                .flatMap(book -> bookService.updateBook(id, book, expectedVersion))
+                .onErrorMap(OptimisticLockingFailureException.class, e -> new PreconditionFailedException(
+                        Map.of("error", "If-Match does not match the current version")))
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .flatMap(book -> ServerResponse.ok().eTag(ETags.of(book.getVersion())).bodyValue(book));
+    }
+
+    // Delete a Book
+    public Mono<ServerResponse> deleteBook(ServerRequest request) {
+        long id = id(request);
+        return bookService.deleteBook(id).flatMap(deleted -> deleted
+                ? ServerResponse.noContent().build()
+                : Mono.error(notFound(id)));
+    }
+
+    // Search for Books; results are streamed in rank (or, with mode=prefix, alphabetical) order
+    public Mono<ServerResponse> searchBooks(ServerRequest request) {
+        String title = request.queryParam("title").orElse(null);
+        String author = request.queryParam("author").orElse(null);
+        String q = request.queryParam("q").orElse(null);
+        int page = intParam(request, "page", 0);
+        int size = intParam(request, "size", BookRequests.DEFAULT_PAGE_SIZE);
+        SearchMode mode = BookRequests.validateSearch(title, author, q, request.queryParam("mode").orElse("contains"),
+                page, size);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(bookService.searchBooks(mode, title, author, q, page, size), Book.class);
+    }
+
+    private static long id(ServerRequest request) {
+        try {
+            return Long.parseLong(request.pathVariable("id"));
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid book id: " + request.pathVariable("id"));
+        }
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    private static NotFoundException notFound(long id) {
+        return new NotFoundException(Map.of("error", String.format("Book with id %d not found", id)));
+    }
+}
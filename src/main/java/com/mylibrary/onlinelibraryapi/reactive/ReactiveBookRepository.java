@@ -0,0 +1,174 @@
+package com.mylibrary.onlinelibraryapi.reactive;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * R2DBC counterpart of BookRepository for the reactive profile, on the books table JPA maps.
+ * Results are emitted as rows come off the connection, so downstream demand paces the reads.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveBookRepository {
+    private static final String COLUMNS = "id, title, author, isbn, publication_year, description, version";
+
+    private final DatabaseClient client;
+    private final Object idLock = new Object();
+    private long nextId;
+    private long lastId = -1; // nothing reserved yet
+
+    public ReactiveBookRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<Book> findById(long id) {
+        return client.sql("SELECT " + COLUMNS + " FROM books WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    // Keyset page of books with an id greater than `afterId` (or from the start when null)
+    public Flux<Book> findAfter(Long afterId, int limit) {
+        return client.sql("SELECT " + COLUMNS + " FROM books WHERE id > :afterId ORDER BY id LIMIT :limit")
+                .bind("afterId", afterId == null ? Long.MIN_VALUE : afterId)
+                .bind("limit", limit)
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    public Flux<Book> streamAll() {
+        return client.sql("SELECT " + COLUMNS + " FROM books ORDER BY id")
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    public Flux<Book> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return client.sql("SELECT " + COLUMNS + " FROM books WHERE id IN (:ids)")
+                .bind("ids", ids)
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    // Prefix search on the normalized columns, see BookRepository.findIdsByTitlePrefix; null patterns match all
+    public Flux<Book> findByPrefix(String titlePattern, String authorPattern, long offset, int limit) {
+        List<String> conditions = new ArrayList<>();
+        if (titlePattern != null) {
+            conditions.add("normalized_title LIKE :titlePattern ESCAPE '!'");
+        }
+        if (authorPattern != null) {
+            conditions.add("normalized_author LIKE :authorPattern ESCAPE '!'");
+        }
+        String order = titlePattern != null ? "normalized_title" : "normalized_author";
+        DatabaseClient.GenericExecuteSpec spec = client.sql("SELECT " + COLUMNS + " FROM books WHERE "
+                        + String.join(" AND ", conditions) + " ORDER BY " + order + ", id LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset);
+        if (titlePattern != null) {
+            spec = spec.bind("titlePattern", titlePattern);
+        }
+        if (authorPattern != null) {
+            spec = spec.bind("authorPattern", authorPattern);
+        }
+        return spec.map(ReactiveBookRepository::toBook).all();
+    }
+
+    public Mono<Boolean> existsById(long id) {
+        return client.sql("SELECT 1 FROM books WHERE id = :id")
+                .bind("id", id)
+                .fetch().first().hasElement();
+    }
+
+    // Assigns the next id and inserts the book at version 0
+    public Mono<Book> insert(Book book) {
+        return nextId().flatMap(id -> {
+            book.setId(id);
+            book.setVersion(0L);
+            book.updateSearchColumns();
+            DatabaseClient.GenericExecuteSpec spec = client.sql("INSERT INTO books (" + COLUMNS
+                            + ", normalized_title, normalized_author) VALUES (:id, :title, :author, :isbn,"
+                            + " :publicationYear, :description, :version, :normalizedTitle, :normalizedAuthor)")
+                    .bind("id", id)
+                    .bind("version", 0L)
+                    .bind("normalizedTitle", book.getNormalizedTitle())
+                    .bind("normalizedAuthor", book.getNormalizedAuthor());
+            return bindFields(spec, book).fetch().rowsUpdated().thenReturn(book);
+        });
+    }
+
+    // One UPDATE; emits the book's new version, or nothing when the id (or the expected version) does not match.
+    // The version comes back from the UPDATE itself (an H2 data change delta table, like UPDATE ... RETURNING),
+    // as statements run in auto-commit and a second read could see a later write.
+    public Mono<Long> update(long id, Book book, Long expectedVersion) {
+        book.updateSearchColumns();
+        DatabaseClient.GenericExecuteSpec spec = client.sql("SELECT version FROM FINAL TABLE (UPDATE books"
+                        + " SET title = :title, author = :author, isbn = :isbn, publication_year = :publicationYear,"
+                        + " description = :description, normalized_title = :normalizedTitle,"
+                        + " normalized_author = :normalizedAuthor, version = version + 1 WHERE id = :id"
+                        + (expectedVersion == null ? "" : " AND version = :expectedVersion") + ")")
+                .bind("id", id)
+                .bind("normalizedTitle", book.getNormalizedTitle())
+                .bind("normalizedAuthor", book.getNormalizedAuthor());
+        if (expectedVersion != null) {
+            spec = spec.bind("expectedVersion", expectedVersion);
+        }
+        return bindFields(spec, book).map(row -> row.get("version", Long.class)).one();
+    }
+
+    public Mono<Long> deleteById(long id) {
+        return client.sql("DELETE FROM books WHERE id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated();
+    }
+
+    // Hands out ids the way Hibernate's pooled optimizer does: sequence value v reserves the block
+    // (v - Book.ID_ALLOCATION_SIZE .. v], so books inserted through JPA and through R2DBC never collide
+    private Mono<Long> nextId() {
+        synchronized (idLock) {
+            if (nextId <= lastId) {
+                return Mono.just(nextId++);
+            }
+        }
+        return client.sql("SELECT NEXT VALUE FOR " + Book.ID_SEQUENCE)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(hi -> {
+                    long first = Math.max(1, hi - Book.ID_ALLOCATION_SIZE + 1);
+                    synchronized (idLock) {
+                        nextId = first + 1;
+                        lastId = hi;
+                    }
+                    return first;
+                });
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindFields(DatabaseClient.GenericExecuteSpec spec, Book book) {
+        spec = spec.bind("title", book.getTitle())
+                .bind("author", book.getAuthor())
+                .bind("isbn", book.getIsbn())
+                .bind("publicationYear", book.getPublicationYear());
+        return book.getDescription() == null
+                ? spec.bindNull("description", String.class)
+                : spec.bind("description", book.getDescription());
+    }
+
+    private static Book toBook(Readable row) {
+        Book book = new Book(row.get("id", Long.class), row.get("title", String.class),
+                row.get("author", String.class), row.get("isbn", String.class),
+                row.get("publication_year", Integer.class), row.get("description", String.class));
+        book.setVersion(row.get("version", Long.class));
+        return book;
+    }
+}
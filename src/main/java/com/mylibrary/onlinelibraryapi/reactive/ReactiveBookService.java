@@ -0,0 +1,141 @@
+package com.mylibrary.onlinelibraryapi.reactive;
+
+import com.mylibrary.onlinelibraryapi.exception.CustomException;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.BookSearchIndex;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.search.SearchQuery;
+import com.mylibrary.onlinelibraryapi.search.TextNormalizer;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.BookChangeLog;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reactive counterpart of BookService: the same rules and change events, on R2DBC without blocking.
+ * The change log, search index, facets and caches follow along through the BookChangeEvents published here.
+ * Statements run in auto-commit, so events are published once a write has gone through.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveBookService {
+    private static final String DUPLICATE_ISBN = "A book with this ISBN already exists";
+
+    private final ReactiveBookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookChangeLog bookChangeLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+
+    public ReactiveBookService(ReactiveBookRepository bookRepository, BookSearchIndex bookSearchIndex,
+                               BookChangeLog bookChangeLog, ApplicationEventPublisher eventPublisher,
+                               TransactionTemplate transactionTemplate, Validator validator) {
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookChangeLog = bookChangeLog;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+    }
+
+    public Mono<Book> createBook(Book book) {
+        Set<ConstraintViolation<Book>> violations = validator.validate(book);
+        if (!violations.isEmpty()) {
+            return Mono.error(new ConstraintViolationException(violations));
+        }
+        // A duplicate ISBN is left to the unique constraint, so a new book costs no lookup first
+        return bookRepository.insert(book)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new CustomException(Map.of("isbn", DUPLICATE_ISBN)))
+                .flatMap(created -> publish(BookChangeEvent.created(List.of(created))).thenReturn(created));
+    }
+
+    // Returns at most `limit` books with an id greater than `afterId` (or from the start when null)
+    public Flux<Book> getBooksAfter(Long afterId, int limit) {
+        return bookRepository.findAfter(afterId, limit);
+    }
+
+    public Flux<Book> streamAllBooks() {
+        return bookRepository.streamAll();
+    }
+
+    public Mono<Book> getBookById(long id) {
+        return bookRepository.findById(id);
+    }
+
+    // Same contract as BookService.updateBook: empty when there is no such book, an
+    // OptimisticLockingFailureException when the expected version is stale
+    public Mono<Book> updateBook(long id, Book updatedBook, Long expectedVersion) {
+        Set<ConstraintViolation<Book>> violations = validator.validate(updatedBook);
+        if (!violations.isEmpty()) {
+            return bookRepository.existsById(id)
+                    .flatMap(exists -> exists ? Mono.error(new ConstraintViolationException(violations)) : Mono.empty());
+        }
+        Book book = new Book(id, updatedBook.getTitle(), updatedBook.getAuthor(), updatedBook.getIsbn(),
+                updatedBook.getPublicationYear(), updatedBook.getDescription());
+        return bookRepository.update(id, book, expectedVersion)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new CustomException(Map.of("isbn", DUPLICATE_ISBN)))
+                .flatMap(version -> {
+                    book.setVersion(version);
+                    return publish(BookChangeEvent.updated(List.of(book))).thenReturn(book);
+                })
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.empty()
+                        : bookRepository.existsById(id).flatMap(exists -> exists
+                                ? Mono.error(new OptimisticLockingFailureException("Book " + id + " has changed"))
+                                : Mono.empty())));
+    }
+
+    // Emits false when there was no book with this id
+    public Mono<Boolean> deleteBook(long id) {
+        return bookRepository.deleteById(id).flatMap(deleted -> deleted == 0
+                ? Mono.just(false)
+                : publish(BookChangeEvent.deleted(List.of(id))).thenReturn(true));
+    }
+
+    // Contains mode ranks through the in-memory index and fetches the page in one query;
+    // prefix mode streams straight from the normalized column indexes
+    public Flux<Book> searchBooks(SearchMode mode, String title, String author, String text, int page, int size) {
+        if (mode == SearchMode.PREFIX) {
+            String titlePattern = TextNormalizer.prefixPattern(title);
+            String authorPattern = TextNormalizer.prefixPattern(author);
+            if (titlePattern == null && authorPattern == null) {
+                return Flux.empty();
+            }
+            return bookRepository.findByPrefix(titlePattern, authorPattern, (long) page * size, size);
+        }
+        List<Long> ids = bookSearchIndex.search(new SearchQuery(title, author, text), (long) page * size, size);
+        return bookRepository.findAllById(ids)
+                .collectMap(Book::getId)
+                .flatMapIterable(booksById -> ids.stream()
+                        .map(booksById::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    // The change log is JPA: it is appended in a short transaction of its own right after the R2DBC statement,
+    // on a worker thread, so unlike on the servlet stack the two are not atomic
+    private Mono<Void> publish(BookChangeEvent event) {
+        return Mono.<Void>fromRunnable(() -> {
+            transactionTemplate.executeWithoutResult(status -> bookChangeLog.append(event));
+            eventPublisher.publishEvent(event);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,120 @@
+package com.mylibrary.onlinelibraryapi.reactive;
+
+import com.mylibrary.onlinelibraryapi.exception.CustomException;
+import com.mylibrary.onlinelibraryapi.exception.NotFoundException;
+import com.mylibrary.onlinelibraryapi.exception.PreconditionFailedException;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import jakarta.validation.ConstraintViolationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reactive variant of the books API, enabled by the "reactive" profile: WebFlux on Netty with functional
+ * routes, and R2DBC against the same H2 database JPA uses. JPA still owns the schema and startup indexing,
+ * and the servlet-only endpoints (bulk operations, imports, AI insights) are not served in this mode.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig implements DisposableBean {
+    private static final String JDBC_H2 = "jdbc:h2:";
+
+    private ConnectionPool connectionPool;
+
+    // R2DBC client over pooled connections to the H2 database named by spring.datasource.url.
+    // The pool is deliberately not a ConnectionFactory bean: Boot would then back off from the DataSource JPA needs.
+    @Bean
+    public DatabaseClient databaseClient(@Value("${spring.datasource.url}") String jdbcUrl,
+                                         @Value("${spring.datasource.username:sa}") String username,
+                                         @Value("${spring.datasource.password:}") String password,
+                                         @Value("${library.reactive.pool.max-size:20}") int maxSize) {
+        if (!jdbcUrl.startsWith(JDBC_H2)) {
+            throw new IllegalStateException("The reactive profile only supports H2, not " + jdbcUrl);
+        }
+        H2ConnectionFactory h2 = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(jdbcUrl.substring(JDBC_H2.length()))
+                .username(username)
+                .password(password)
+                .build());
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(h2)
+                .initialSize(Math.min(4, maxSize))
+                .maxSize(maxSize)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+
+    // Tomcat is on the classpath for the servlet stack; the reactive stack runs on Netty's event loops
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // Same open access as SecurityConfig on the servlet stack
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange(exchanges -> exchanges.anyExchange().permitAll())
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> bookRoutes(BookHandler books) {
+        return RouterFunctions.route()
+                .path("/books", builder -> builder
+                        .GET("/stream", books::streamAllBooks)
+                        .GET("/search", books::searchBooks)
+                        .GET("/changes", books::streamChanges)
+                        .GET("/{id}", books::getBookById)
+                        .PUT("/{id}", books::updateBook)
+                        .DELETE("/{id}", books::deleteBook)
+                        .GET("", books::getAllBooks)
+                        .POST("", books::createBook))
+                .filter((request, next) -> Mono.defer(() -> next.handle(request))
+                        .onErrorResume(ReactiveConfig::errorResponse))
+                .build();
+    }
+
+    // The error bodies GlobalExceptionHandler produces on the servlet stack
+    private static Mono<ServerResponse> errorResponse(Throwable error) {
+        if (error instanceof CustomException e) {
+            return ServerResponse.status(HttpStatus.BAD_REQUEST).bodyValue(e.getErrors());
+        }
+        if (error instanceof NotFoundException e) {
+            return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(e.getErrors());
+        }
+        if (error instanceof PreconditionFailedException e) {
+            return ServerResponse.status(HttpStatus.PRECONDITION_FAILED).bodyValue(e.getErrors());
+        }
+        if (error instanceof ConstraintViolationException e) {
+            Map<String, String> errors = new HashMap<>();
+            e.getConstraintViolations().forEach(violation ->
+                    errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+            return ServerResponse.status(HttpStatus.BAD_REQUEST).bodyValue(errors);
+        }
+        return Mono.error(error);
+    }
+}
@@ -0,0 +1,20 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.BookChangeLogEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BookChangeLogRepository extends JpaRepository<BookChangeLogEntry, Long> {
+
+    @Query("SELECT COALESCE(MAX(e.sequence), 0) FROM BookChangeLogEntry e")
+    long findLastSequence();
+
+    // Keyset pagination over the log, oldest first
+    List<BookChangeLogEntry> findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequenceAsc(
+            long after, long upTo, Limit limit);
+}
@@ -0,0 +1,19 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.BookField;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Projection queries that select only the requested columns, so e.g. the description LOB is never read
+// unless asked for. Rows come back as field name -> value maps in BookField order.
+public interface BookFieldsRepository {
+
+    // Keyset page of books with an id greater than `afterId` (or from the start when null)
+    List<Map<String, Object>> findFieldsAfter(Set<BookField> fields, Long afterId, int limit);
+
+    // Rows for the given ids, in no particular order
+    List<Map<String, Object>> findFieldsByIds(Set<BookField> fields, Collection<Long> ids);
+}
@@ -0,0 +1,60 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.BookField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Picked up by Spring Data as the implementation of the BookFieldsRepository fragment of BookRepository
+class BookFieldsRepositoryImpl implements BookFieldsRepository {
+    private final EntityManager entityManager;
+
+    BookFieldsRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsAfter(Set<BookField> fields, Long afterId, int limit) {
+        String where = afterId == null ? "" : " WHERE b.id > :afterId";
+        TypedQuery<Object[]> query = entityManager.createQuery(
+                select(fields) + where + " ORDER BY b.id", Object[].class);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        return toRows(fields, query.setMaxResults(limit).getResultList());
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsByIds(Set<BookField> fields, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return toRows(fields, entityManager.createQuery(select(fields) + " WHERE b.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList());
+    }
+
+    // Property names come from the enum, never from the request, so building the JPQL is safe
+    private static String select(Set<BookField> fields) {
+        return fields.stream()
+                .map(field -> "b." + field.property())
+                .collect(Collectors.joining(", ", "SELECT ", " FROM Book b"));
+    }
+
+    private static List<Map<String, Object>> toRows(Set<BookField> fields, List<Object[]> results) {
+        return results.stream().map(values -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            int i = 0;
+            for (BookField field : fields) {
+                row.put(field.property(), values[i++]);
+            }
+            return row;
+        }).toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the book id sequence ahead of the ids already in the table. Databases written before ids came from
+ * books_seq (IDENTITY columns) get the sequence created at 1 by ddl-auto=update, and the pooled optimizer would
+ * hand out ids that are taken. Runs once all beans are ready, before the server takes traffic and before any
+ * book is inserted.
+ */
+@Component
+public class BookIdSequence implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(BookIdSequence.class);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public BookIdSequence(EntityManager entityManager, TransactionTemplate transactionTemplate) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> {
+            long maxId = entityManager.createQuery("SELECT COALESCE(MAX(b.id), 0) FROM Book b", Long.class)
+                    .getSingleResult();
+            // The pooled optimizer hands out the block ending at the value it reads, so that whole block has to
+            // lie above the highest id. Reading a value skips at most one block of ids.
+            long next = ((Number) entityManager.createNativeQuery(nextValueQuery()).getSingleResult()).longValue();
+            if (next - Book.ID_ALLOCATION_SIZE < maxId) {
+                long restartWith = maxId + Book.ID_ALLOCATION_SIZE;
+                entityManager.createNativeQuery("ALTER SEQUENCE " + Book.ID_SEQUENCE + " RESTART WITH " + restartWith)
+                        .executeUpdate();
+                log.info("Restarted {} at {}, above the existing book ids", Book.ID_SEQUENCE, restartWith);
+            }
+        });
+    }
+
+    private String nextValueQuery() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(Book.ID_SEQUENCE);
+    }
+}
@@ -0,0 +1,16 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.BookInsight;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BookInsightRepository extends JpaRepository<BookInsight, Long> {
+
+    // Insights have no foreign key to books, so the ones of deleted books are swept up here
+    @Modifying
+    @Query("DELETE FROM BookInsight i WHERE NOT EXISTS (SELECT b.id FROM Book b WHERE b.id = i.bookId)")
+    int deleteOrphans();
+}
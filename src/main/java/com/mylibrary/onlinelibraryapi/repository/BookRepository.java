@@ -1,24 +1,92 @@
 package com.mylibrary.onlinelibraryapi.repository;
 
 import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookPatch;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookFieldsRepository,
+        BookUpdateRepository {
 
-    // Custom search queries
-    List<Book> findByTitleContainingIgnoreCase(String title);
+    boolean existsByIsbn(@NotBlank(message = "ISBN cannot be empty") @Pattern(regexp = "^(97(8|9))?\\d{9}(\\d|X)$", message = "Invalid ISBN format") String isbn);
 
-    List<Book> findByAuthorContainingIgnoreCase(String author);
+    // Which of these ISBNs are already taken (one query per bulk import chunk)
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    Set<String> findExistingIsbns(Collection<String> isbns);
 
-    @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%')) AND LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))")
-    List<Book> findByTitleAndAuthor(String title, String author);
+    // Bulk operation filters; null filter fields match everything.
+    // Filter-only selections are walked in keyset order, id lists are resolved one chunk at a time.
+    @Query("SELECT b.id FROM Book b WHERE b.id > :afterId"
+            + " AND (:author IS NULL OR b.author = :author)"
+            + " AND (:fromYear IS NULL OR b.publicationYear >= :fromYear)"
+            + " AND (:toYear IS NULL OR b.publicationYear <= :toYear)"
+            + " ORDER BY b.id")
+    List<Long> findIdsMatching(long afterId, String author, Integer fromYear, Integer toYear, Limit limit);
 
-    boolean existsByIsbn(@NotBlank(message = "ISBN cannot be empty") @Pattern(regexp = "^(97(8|9))?\\d{9}(\\d|X)$", message = "Invalid ISBN format") String isbn);
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids"
+            + " AND (:author IS NULL OR b.author = :author)"
+            + " AND (:fromYear IS NULL OR b.publicationYear >= :fromYear)"
+            + " AND (:toYear IS NULL OR b.publicationYear <= :toYear)"
+            + " ORDER BY b.id")
+    List<Long> findIdsMatching(Collection<Long> ids, String author, Integer fromYear, Integer toYear);
+
+    // Prefix search on the normalized columns: LIKE 'abc%' is a range scan on their indexes.
+    // Patterns come from TextNormalizer.prefixPattern; results come in normalized title (or author) order.
+    @Query("SELECT b.id FROM Book b WHERE b.normalizedTitle LIKE :titlePattern ESCAPE '!'"
+            + " ORDER BY b.normalizedTitle, b.id")
+    List<Long> findIdsByTitlePrefix(String titlePattern, Pageable pageable);
+
+    @Query("SELECT b.id FROM Book b WHERE b.normalizedAuthor LIKE :authorPattern ESCAPE '!'"
+            + " ORDER BY b.normalizedAuthor, b.id")
+    List<Long> findIdsByAuthorPrefix(String authorPattern, Pageable pageable);
+
+    @Query("SELECT b.id FROM Book b WHERE b.normalizedTitle LIKE :titlePattern ESCAPE '!'"
+            + " AND b.normalizedAuthor LIKE :authorPattern ESCAPE '!'"
+            + " ORDER BY b.normalizedTitle, b.id")
+    List<Long> findIdsByTitleAndAuthorPrefix(String titlePattern, String authorPattern, Pageable pageable);
+
+    // Rows written before the normalized columns existed, in keyset order
+    @Query("SELECT b FROM Book b WHERE b.id > :afterId"
+            + " AND (b.normalizedTitle IS NULL OR b.normalizedAuthor IS NULL) ORDER BY b.id")
+    List<Book> findMissingSearchColumns(long afterId, Limit limit);
+
+    // Set-based bulk writes
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.author = COALESCE(:#{#patch.author}, b.author),"
+            + " b.normalizedAuthor = COALESCE(:#{T(com.mylibrary.onlinelibraryapi.search.TextNormalizer)"
+            + ".normalize(#patch.author)}, b.normalizedAuthor),"
+            + " b.publicationYear = COALESCE(:#{#patch.publicationYear}, b.publicationYear),"
+            + " b.description = COALESCE(:#{#patch.description}, b.description),"
+            + " b.version = b.version + 1"
+            + " WHERE b.id IN :ids")
+    int bulkUpdate(Collection<Long> ids, BookPatch patch);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Book b WHERE b.id IN :ids")
+    int bulkDelete(Collection<Long> ids);
+
+    // Keyset pagination: the next page starts right after the last id of the previous one
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Book> findAllByOrderByIdAsc(Limit limit);
+
+    // Reads the whole table through a JDBC cursor (must be consumed inside a transaction)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAll();
 }
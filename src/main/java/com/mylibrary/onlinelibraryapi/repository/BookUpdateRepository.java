@@ -0,0 +1,14 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.util.Optional;
+
+// Single-statement update that hands back the version it left, so an update without an expected version needs no
+// second query to learn it
+public interface BookUpdateRepository {
+
+    // The book's new version, or empty when the id (or the expected version) does not match.
+    // A null expectedVersion updates whatever version is stored.
+    Optional<Long> updateById(Long id, Book book, Long expectedVersion);
+}
@@ -0,0 +1,49 @@
+package com.mylibrary.onlinelibraryapi.repository;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
+
+import java.util.List;
+import java.util.Optional;
+
+// Picked up by Spring Data as the implementation of the BookUpdateRepository fragment of BookRepository.
+// The UPDATE runs inside an H2 data change delta table (like UPDATE ... RETURNING), as ReactiveBookRepository does.
+class BookUpdateRepositoryImpl implements BookUpdateRepository {
+    private static final String UPDATE = "SELECT version FROM FINAL TABLE (UPDATE books"
+            + " SET title = :title, author = :author, isbn = :isbn, publication_year = :publicationYear,"
+            + " description = :description, normalized_title = :normalizedTitle,"
+            + " normalized_author = :normalizedAuthor, version = version + 1"
+            + " WHERE id = :id AND (CAST(:expectedVersion AS BIGINT) IS NULL OR version = :expectedVersion))";
+
+    private final EntityManager entityManager;
+
+    BookUpdateRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<Long> updateById(Long id, Book book, Long expectedVersion) {
+        // Hibernate sees a query, not a write: flush pending changes first and let go of stale copies afterwards,
+        // as @Modifying(flushAutomatically = true, clearAutomatically = true) would
+        entityManager.flush();
+        // A native update bypasses @PreUpdate, hence the normalized columns are set here too
+        book.updateSearchColumns();
+        List<?> versions = entityManager.createNativeQuery(UPDATE)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Book.class)
+                .setParameter("id", id)
+                .setParameter("title", book.getTitle())
+                .setParameter("author", book.getAuthor())
+                .setParameter("isbn", book.getIsbn())
+                .setParameter("publicationYear", book.getPublicationYear())
+                .setParameter("description", book.getDescription())
+                .setParameter("normalizedTitle", book.getNormalizedTitle())
+                .setParameter("normalizedAuthor", book.getNormalizedAuthor())
+                .setParameter("expectedVersion", expectedVersion, Long.class)
+                .getResultList();
+        entityManager.clear();
+        entityManager.getEntityManagerFactory().getCache().evict(Book.class, id);
+        return versions.stream().findFirst().map(version -> ((Number) version).longValue());
+    }
+}
@@ -0,0 +1,229 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.TransactionCallbacks;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts over the catalog: books per author, per publication decade, and per author within a
+ * decade (and the other way round). The counters are adjusted on every BookService write instead of
+ * aggregating the table per request, so a facet query costs O(distinct values) whatever the catalog size.
+ * Writes are counted once they commit; until then the writing transaction sees them on top of the counters.
+ */
+@Component
+public class BookFacets {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>(); // what each book is counted under, to undo it later
+    private final Map<String, Integer> byAuthor = new HashMap<>();
+    private final Map<Integer, Integer> byDecade = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> decadesByAuthor = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> authorsByDecade = new HashMap<>();
+    // Books deleted while other transactions with changes were open, so that a commit finishing late cannot
+    // bring them back (ids are never reused); cleared once none are open
+    private final Set<Long> deletedIds = new HashSet<>();
+    private int openWrites;
+    // Resource key for the current transaction's changes: book id -> entry as written, null when deleted
+    private final Object pendingKey = new Object();
+
+    private record Entry(String author, int decade, Long version) {
+    }
+
+    public record Count<T>(T value, int count) {
+    }
+
+    // Each facet is counted with the other facet's filter applied, so clients can switch between values
+    public record Facets(long total, List<Count<String>> authors, List<Count<Integer>> decades) {
+    }
+
+    public static int decadeOf(int year) {
+        return year - Math.floorMod(year, 10);
+    }
+
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            put(book.getId(), entryOf(book));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Holds BookService writes back until their transaction commits, applying them right away outside one
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        Map<Long, Entry> changes = new LinkedHashMap<>();
+        if (event.type() == BookChangeEvent.Type.DELETED) {
+            event.ids().forEach(id -> changes.put(id, null));
+        } else {
+            event.books().forEach(book -> changes.put(book.getId(), entryOf(book)));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.writeLock().lock();
+            try {
+                apply(changes);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        TransactionCallbacks.pending(pendingKey, this::writeStarted, this::finish).putAll(changes);
+    }
+
+    /**
+     * Facets for the books matching the optional author (exact) and decade filters.
+     * Authors are ordered by count, then name, and cut at `limit`; decades are all returned in order.
+     */
+    @SuppressWarnings("unchecked")
+    public Facets facets(String author, Integer decade, int limit) {
+        Map<Long, Entry> own = (Map<Long, Entry>) TransactionSynchronizationManager.getResource(pendingKey);
+        lock.readLock().lock();
+        try {
+            long total;
+            if (author != null && decade != null) {
+                total = decadesByAuthor.getOrDefault(author, Map.of()).getOrDefault(decade, 0);
+            } else if (author != null) {
+                total = byAuthor.getOrDefault(author, 0);
+            } else if (decade != null) {
+                total = byDecade.getOrDefault(decade, 0);
+            } else {
+                total = entries.size();
+            }
+            Map<String, Integer> authors = decade == null ? byAuthor : authorsByDecade.getOrDefault(decade, Map.of());
+            Map<Integer, Integer> decades = author == null ? byDecade : decadesByAuthor.getOrDefault(author, Map.of());
+            if (own != null) {
+                // The transaction's own writes, counted into copies of the counters this query reads
+                authors = new HashMap<>(authors);
+                decades = new HashMap<>(decades);
+                for (Map.Entry<Long, Entry> change : own.entrySet()) {
+                    total += count(entries.get(change.getKey()), author, decade, authors, decades, -1);
+                    total += count(change.getValue(), author, decade, authors, decades, 1);
+                }
+            }
+            return new Facets(total,
+                    counts(authors, Comparator.<Count<String>>comparingInt(Count::count).reversed()
+                            .thenComparing(Count::value), limit),
+                    counts(decades, Comparator.comparing(Count::value), Integer.MAX_VALUE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <T> List<Count<T>> counts(Map<T, Integer> counters, Comparator<Count<T>> order, int limit) {
+        return counters.entrySet().stream()
+                .map(counter -> new Count<>(counter.getKey(), counter.getValue()))
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+
+    // Counts the entry in or out of a query's counters, returning the change to its total
+    private static int count(Entry entry, String author, Integer decade, Map<String, Integer> authors,
+                             Map<Integer, Integer> decades, int delta) {
+        if (entry == null) {
+            return 0;
+        }
+        boolean authorMatches = author == null || author.equals(entry.author());
+        boolean decadeMatches = decade == null || decade == entry.decade();
+        if (decadeMatches) {
+            adjust(authors, entry.author(), delta);
+        }
+        if (authorMatches) {
+            adjust(decades, entry.decade(), delta);
+        }
+        return authorMatches && decadeMatches ? delta : 0;
+    }
+
+    private static Entry entryOf(Book book) {
+        return new Entry(book.getAuthor(), decadeOf(book.getPublicationYear()), book.getVersion());
+    }
+
+    private Map<Long, Entry> writeStarted() {
+        lock.writeLock().lock();
+        try {
+            openWrites++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new LinkedHashMap<>();
+    }
+
+    private void finish(Map<Long, Entry> changes, boolean committed) {
+        lock.writeLock().lock();
+        try {
+            if (committed) {
+                apply(changes);
+            }
+            if (--openWrites == 0) {
+                deletedIds.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The methods below expect the write lock to be held
+
+    // Commits of the same book can report back out of order: an older version never replaces a newer one,
+    // and a deleted book stays deleted
+    private void apply(Map<Long, Entry> changes) {
+        changes.forEach((id, entry) -> {
+            if (entry == null) {
+                delete(id);
+                if (openWrites > 0) {
+                    deletedIds.add(id);
+                }
+                return;
+            }
+            Entry current = entries.get(id);
+            if (deletedIds.contains(id) || (current != null && current.version() != null && entry.version() != null
+                    && current.version() > entry.version())) {
+                return;
+            }
+            put(id, entry);
+        });
+    }
+
+    private void put(long id, Entry entry) {
+        delete(id);
+        entries.put(id, entry);
+        adjust(entry, 1);
+    }
+
+    private void delete(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            adjust(entry, -1);
+        }
+    }
+
+    private void adjust(Entry entry, int delta) {
+        adjust(byAuthor, entry.author(), delta);
+        adjust(byDecade, entry.decade(), delta);
+        adjust(decadesByAuthor.computeIfAbsent(entry.author(), key -> new HashMap<>()), entry.decade(), delta);
+        adjust(authorsByDecade.computeIfAbsent(entry.decade(), key -> new HashMap<>()), entry.author(), delta);
+        if (decadesByAuthor.get(entry.author()).isEmpty()) {
+            decadesByAuthor.remove(entry.author());
+        }
+        if (authorsByDecade.get(entry.decade()).isEmpty()) {
+            authorsByDecade.remove(entry.decade());
+        }
+    }
+
+    // Counters that drop to zero are removed so they no longer show up as facet values
+    private static <T> void adjust(Map<T, Integer> counters, T key, int delta) {
+        counters.merge(key, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+}
@@ -0,0 +1,403 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.TransactionCallbacks;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the catalog.
+ * Title and author are indexed as character trigrams so substring filters only look at books
+ * containing every trigram of the query; title, author and description words go into a term index
+ * for free-text queries. Results are ranked, then verified against the stored normalized fields.
+ * Writes reach the index once they commit, so other readers never see uncommitted books; until then the
+ * writing transaction sees its own changes on top of the index.
+ */
+@Component
+public class BookSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final Comparator<Match> RANKING =
+            Comparator.comparingInt(Match::score).reversed().thenComparingLong(Match::id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexedBook> documents = new HashMap<>();
+    private final Map<String, PostingList> titleGrams = new HashMap<>();
+    private final Map<String, PostingList> authorGrams = new HashMap<>();
+    private final Map<String, Term> terms = new HashMap<>();
+    // Books deleted while other transactions with changes were open, so that a commit finishing late cannot
+    // bring them back (ids are never reused); cleared once none are open. Guarded by the lock, like openWrites.
+    private final Set<Long> deletedIds = new HashSet<>();
+    private int openWrites;
+    // Resource key for the current transaction's changes: book id -> book as written, null when deleted
+    private final Object pendingKey = new Object();
+
+    // Normalized copy of what we need for ranking and removal; terms are the shared Term strings once indexed
+    private record IndexedBook(long id, Long version, String title, String author, String[] terms) {
+    }
+
+    private record Match(long id, int score) {
+    }
+
+    // Keeps the canonical String alongside its postings so documents can share it
+    private record Term(String text, PostingList postings) {
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void index(Book book) {
+        IndexedBook document = document(book);
+        lock.writeLock().lock();
+        try {
+            delete(document.id());
+            insert(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            delete(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Holds BookService writes back until their transaction commits, applying them right away outside one
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        Map<Long, IndexedBook> changes = new LinkedHashMap<>();
+        if (event.type() == BookChangeEvent.Type.DELETED) {
+            event.ids().forEach(id -> changes.put(id, null));
+        } else {
+            event.books().forEach(book -> changes.put(book.getId(), document(book)));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.writeLock().lock();
+            try {
+                apply(changes);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        pendingChanges().putAll(changes);
+    }
+
+    /**
+     * True when the query narrows the search through the index: a title or author of at least three characters,
+     * or a word to look for. Anything less would have to rank the whole catalog, so search finds nothing for it.
+     */
+    public static boolean isSearchable(SearchQuery query) {
+        String title = TextNormalizer.normalize(query.title());
+        String author = TextNormalizer.normalize(query.author());
+        return (title != null && title.length() >= GRAM_LENGTH) || (author != null && author.length() >= GRAM_LENGTH)
+                || TextNormalizer.tokenize(TextNormalizer.normalize(query.text())).length > 0;
+    }
+
+    /**
+     * Returns the ids of the matching books, best match first, skipping `offset` results.
+     * Ties are broken by id so paging is stable. Only the best `offset + limit` matches are kept while ranking.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> search(SearchQuery query, long offset, int limit) {
+        if (!isSearchable(query)) {
+            return List.of();
+        }
+        String title = TextNormalizer.normalize(query.title());
+        String author = TextNormalizer.normalize(query.author());
+        String[] words = TextNormalizer.tokenize(TextNormalizer.normalize(query.text()));
+        Map<Long, IndexedBook> own = (Map<Long, IndexedBook>) TransactionSynchronizationManager.getResource(pendingKey);
+        TopMatches top = new TopMatches(offset + limit);
+
+        lock.readLock().lock();
+        try {
+            List<PostingList> required = new ArrayList<>();
+            if (addGramPostings(titleGrams, title, required)
+                    && addGramPostings(authorGrams, author, required)
+                    && addTermPostings(words, required)) {
+                PostingList driver = required.stream().min(Comparator.comparingInt(PostingList::size)).orElseThrow();
+                for (int i = 0; i < driver.size(); i++) {
+                    long id = driver.get(i);
+                    if ((own != null && own.containsKey(id)) || !inAll(required, id)) {
+                        continue;
+                    }
+                    IndexedBook book = documents.get(id);
+                    if (containsNeedles(book, title, author)) {
+                        top.offer(new Match(id, score(book, title, author, words)));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // The transaction's own changes, which the index does not have yet
+        if (own != null) {
+            for (IndexedBook book : own.values()) {
+                if (book != null && containsNeedles(book, title, author) && containsWords(book, words)) {
+                    top.offer(new Match(book.id(), score(book, title, author, words)));
+                }
+            }
+        }
+        return top.page(offset);
+    }
+
+    // The best `capacity` matches seen so far, in a heap with the worst of them on top
+    private static final class TopMatches {
+        private final long capacity;
+        private final PriorityQueue<Match> heap;
+
+        TopMatches(long capacity) {
+            this.capacity = capacity;
+            this.heap = new PriorityQueue<>((int) Math.min(capacity, 1024) + 1, RANKING.reversed());
+        }
+
+        void offer(Match match) {
+            if (heap.size() < capacity) {
+                heap.add(match);
+            } else if (RANKING.compare(match, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(match);
+            }
+        }
+
+        List<Long> page(long offset) {
+            if (offset >= heap.size()) {
+                return List.of();
+            }
+            List<Match> ranked = new ArrayList<>(heap);
+            ranked.sort(RANKING);
+            return ranked.subList((int) offset, ranked.size()).stream().map(Match::id).toList();
+        }
+    }
+
+    private static boolean containsNeedles(IndexedBook book, String title, String author) {
+        return (title == null || book.title().contains(title)) && (author == null || book.author().contains(author));
+    }
+
+    private static boolean containsWords(IndexedBook book, String[] words) {
+        return Arrays.asList(book.terms()).containsAll(Arrays.asList(words));
+    }
+
+    // Title hits count double; exact and prefix hits outrank matches in the middle of a word
+    private static int score(IndexedBook book, String title, String author, String[] words) {
+        int score = 0;
+        if (title != null) {
+            score += 2 * substringScore(book.title(), title);
+        }
+        if (author != null) {
+            score += substringScore(book.author(), author);
+        }
+        for (String word : words) {
+            if (containsWord(book.title(), word)) {
+                score += 3;
+            } else if (containsWord(book.author(), word)) {
+                score += 2;
+            } else {
+                score += 1; // must have come from the description
+            }
+        }
+        return score;
+    }
+
+    private static int substringScore(String field, String needle) {
+        if (field.equals(needle)) {
+            return 4;
+        }
+        if (field.startsWith(needle)) {
+            return 3;
+        }
+        for (int at = field.indexOf(needle); at >= 0; at = field.indexOf(needle, at + 1)) {
+            if (!Character.isLetterOrDigit(field.charAt(at - 1))) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private static boolean containsWord(String field, String word) {
+        for (String token : TextNormalizer.tokenize(field)) {
+            if (token.equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inAll(List<PostingList> lists, long id) {
+        for (PostingList list : lists) {
+            if (!list.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns false when some trigram of the needle is not indexed at all, i.e. nothing in the index can match.
+    // Needles shorter than a trigram add no constraint and are checked against the stored fields only.
+    private static boolean addGramPostings(Map<String, PostingList> grams, String needle, List<PostingList> required) {
+        if (needle == null) {
+            return true;
+        }
+        for (String gram : grams(needle)) {
+            PostingList postings = grams.get(gram);
+            if (postings == null) {
+                return false;
+            }
+            required.add(postings);
+        }
+        return true;
+    }
+
+    private boolean addTermPostings(String[] words, List<PostingList> required) {
+        for (String word : words) {
+            Term term = terms.get(word);
+            if (term == null) {
+                return false;
+            }
+            required.add(term.postings());
+        }
+        return true;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    // Normalized title, author and distinct words of the book, ready to be indexed
+    private static IndexedBook document(Book book) {
+        String title = TextNormalizer.normalize(book.getTitle());
+        String author = TextNormalizer.normalize(book.getAuthor());
+        title = title == null ? "" : title;
+        author = author == null ? "" : author;
+
+        Set<String> bookTerms = new LinkedHashSet<>();
+        for (String text : new String[]{title, author, TextNormalizer.normalize(book.getDescription())}) {
+            bookTerms.addAll(List.of(TextNormalizer.tokenize(text)));
+        }
+        return new IndexedBook(book.getId(), book.getVersion(), title, author, bookTerms.toArray(String[]::new));
+    }
+
+    // The current transaction's changes, registering it for completion on its first change
+    private Map<Long, IndexedBook> pendingChanges() {
+        return TransactionCallbacks.pending(pendingKey, () -> {
+            lock.writeLock().lock();
+            try {
+                openWrites++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return new LinkedHashMap<>();
+        }, this::finish);
+    }
+
+    private void finish(Map<Long, IndexedBook> changes, boolean committed) {
+        lock.writeLock().lock();
+        try {
+            if (committed) {
+                apply(changes);
+            }
+            if (--openWrites == 0) {
+                deletedIds.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The methods below expect the write lock to be held
+
+    // Commits of the same book can report back out of order: an older version never replaces a newer one,
+    // and a deleted book stays deleted
+    private void apply(Map<Long, IndexedBook> changes) {
+        changes.forEach((id, book) -> {
+            if (book == null) {
+                delete(id);
+                if (openWrites > 0) {
+                    deletedIds.add(id);
+                }
+                return;
+            }
+            IndexedBook current = documents.get(id);
+            if (deletedIds.contains(id) || (current != null && current.version() != null && book.version() != null
+                    && current.version() > book.version())) {
+                return;
+            }
+            delete(id);
+            insert(book);
+        });
+    }
+
+    private void delete(long id) {
+        IndexedBook book = documents.remove(id);
+        if (book == null) {
+            return;
+        }
+        grams(book.title()).forEach(gram -> removePosting(titleGrams, gram, id));
+        grams(book.author()).forEach(gram -> removePosting(authorGrams, gram, id));
+        for (String text : book.terms()) {
+            Term term = terms.get(text);
+            if (term != null && term.postings().remove(id) && term.postings().size() == 0) {
+                terms.remove(text);
+            }
+        }
+    }
+
+    private void insert(IndexedBook book) {
+        long id = book.id();
+        String[] canonicalTerms = new String[book.terms().length];
+        for (int i = 0; i < canonicalTerms.length; i++) {
+            canonicalTerms[i] = addTerm(book.terms()[i], id);
+        }
+        grams(book.title()).forEach(gram -> addPosting(titleGrams, gram, id));
+        grams(book.author()).forEach(gram -> addPosting(authorGrams, gram, id));
+        documents.put(id, new IndexedBook(id, book.version(), book.title(), book.author(), canonicalTerms));
+    }
+
+    // Returns the canonical instance of the term so documents share one String per term
+    private String addTerm(String text, long id) {
+        Term term = terms.computeIfAbsent(text, key -> new Term(key, new PostingList()));
+        term.postings().add(id);
+        return term.text();
+    }
+
+    private static void addPosting(Map<String, PostingList> postings, String key, long id) {
+        postings.computeIfAbsent(key, k -> new PostingList()).add(id);
+    }
+
+    private static void removePosting(Map<String, PostingList> postings, String key, long id) {
+        PostingList list = postings.get(key);
+        if (list != null && list.remove(id) && list.size() == 0) {
+            postings.remove(key);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+import com.mylibrary.onlinelibraryapi.catalog.CatalogSnapshots;
+import com.mylibrary.onlinelibraryapi.catalog.ColumnarCatalog;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+// Fills the search index, facet counters and (if enabled) columnar catalog from the database once all beans are
+// ready, before the server takes traffic. Rows that predate the normalized search columns get them filled in
+// first. When the catalog can be restored from a snapshot, the index and counters are filled from it instead of
+// another pass over the table.
+@Component
+public class CatalogViewsInitializer implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(CatalogViewsInitializer.class);
+
+    private final BookService bookService;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookFacets bookFacets;
+    private final ColumnarCatalog columnarCatalog;
+    private final CatalogSnapshots catalogSnapshots;
+
+    public CatalogViewsInitializer(BookService bookService, BookSearchIndex bookSearchIndex, BookFacets bookFacets,
+                                   ColumnarCatalog columnarCatalog, CatalogSnapshots catalogSnapshots) {
+        this.bookService = bookService;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookFacets = bookFacets;
+        this.columnarCatalog = columnarCatalog;
+        this.catalogSnapshots = catalogSnapshots;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long filled = bookService.backfillSearchColumns();
+        if (filled > 0) {
+            log.info("Filled normalized search columns for {} books", filled);
+        }
+        long start = System.nanoTime();
+        if (catalogSnapshots.restore(columnarCatalog)) {
+            columnarCatalog.forEach(book -> {
+                bookSearchIndex.index(book);
+                bookFacets.add(book);
+            });
+        } else {
+            bookService.streamAllBooks(book -> {
+                bookSearchIndex.index(book);
+                bookFacets.add(book);
+                columnarCatalog.add(book);
+            });
+        }
+        log.info("Indexed {} books for search in {} ms", bookSearchIndex.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        if (columnarCatalog.isEnabled()) {
+            ColumnarCatalog.Stats stats = columnarCatalog.stats();
+            log.info("Columnar catalog holds {} books in {} KB ({} bytes per book)", stats.books(),
+                    stats.totalBytes() / 1024, Math.round(stats.bytesPerBook()));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+import java.util.Locale;
+import java.util.Optional;
+
+// How title/author filters match: anywhere (in-memory index, ranked) or at the start (indexed database columns)
+public enum SearchMode {
+    CONTAINS,
+    PREFIX;
+
+    public static Optional<SearchMode> fromParam(String mode) {
+        try {
+            return Optional.of(valueOf(mode.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+// title/author are substring filters, text is a set of words that must all appear somewhere in the book
+public record SearchQuery(String title, String author, String text) {
+}
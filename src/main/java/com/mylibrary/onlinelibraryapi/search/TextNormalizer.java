@@ -0,0 +1,44 @@
+package com.mylibrary.onlinelibraryapi.search;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Shared case folding, accent stripping and tokenization so indexed text and queries are treated the same way
+public final class TextNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextNormalizer() {
+    }
+
+    // Returns null for null or blank input; "Gabriel García" becomes "gabriel garcia"
+    public static String normalize(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // LIKE pattern matching values that start with the normalized prefix; wildcards are escaped with '!'.
+    // Returns null for null or blank input.
+    public static String prefixPattern(String prefix) {
+        String normalized = normalize(prefix);
+        if (normalized == null) {
+            return null;
+        }
+        return normalized.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    public static String[] tokenize(String normalized) {
+        if (normalized == null) {
+            return new String[0];
+        }
+        return Arrays.stream(NON_WORD.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,9 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+// One committed change to one book, numbered by the change log. Deletes carry no book.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BookChange(long sequence, BookChangeEvent.Type type, long id, Book book) {
+}
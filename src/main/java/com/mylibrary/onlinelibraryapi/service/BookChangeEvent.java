@@ -0,0 +1,29 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+
+import java.util.List;
+
+// Published by BookService after every write so in-memory views (search index, caches...) can follow along.
+// Listeners run inside the writing transaction; use TransactionCallbacks to react to its outcome.
+public record BookChangeEvent(Type type, List<Long> ids, List<Book> books) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static BookChangeEvent created(List<Book> books) {
+        return new BookChangeEvent(Type.CREATED, books.stream().map(Book::getId).toList(), books);
+    }
+
+    public static BookChangeEvent updated(List<Book> books) {
+        return new BookChangeEvent(Type.UPDATED, books.stream().map(Book::getId).toList(), books);
+    }
+
+    // Deleted books are only known by id
+    public static BookChangeEvent deleted(List<Long> ids) {
+        return new BookChangeEvent(Type.DELETED, ids, List.of());
+    }
+}
@@ -0,0 +1,128 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Live feed of committed book changes behind GET /books/changes.
+ * BookChangeLog hands over every change once its transaction has committed, numbered by the change log;
+ * the latest changes are kept in a ring buffer so a subscriber that reconnects can resume right after the
+ * last sequence it saw. Subscribers are sinks drained by the web layer, so an idle connection costs a small
+ * queue rather than a thread; one that falls more than a buffer behind is completed and has to resume.
+ */
+@Component
+public class BookChangeFeed {
+    private static final int QUEUE_CHUNK_SIZE = 32;
+
+    private final int bufferSize;
+    private final ArrayDeque<BookChange> buffer;
+    private final Set<Subscriber> subscribers = new LinkedHashSet<>();
+    // Commits can report back out of order; later sequences wait here until the change log has moved past them
+    private final TreeMap<Long, BookChange> pending = new TreeMap<>();
+    private long lastSequence; // guarded by this, like the buffer, the pending changes and the subscriber set
+    private long bufferedAfter; // every change after this sequence, up to lastSequence, is in the buffer
+
+    private static final class Subscriber {
+        final Sinks.Many<BookChange> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<BookChange>unbounded(QUEUE_CHUNK_SIZE).get());
+        volatile long delivered;
+
+        Subscriber(long delivered) {
+            this.delivered = delivered;
+        }
+    }
+
+    /**
+     * Changes after sequence `after` as far as the feed has them: buffered ones first, then live.
+     * When `after` has already left the buffer the feed starts later, at `feedAfter`, and the changes
+     * in between have to come from the change log.
+     */
+    public record Subscription(Flux<BookChange> changes, long after, long feedAfter) {
+    }
+
+    public BookChangeFeed(@Value("${library.changes.buffer-size:1024}") int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.buffer = new ArrayDeque<>(bufferSize);
+    }
+
+    // Picks up numbering where the change log left off before this start
+    public synchronized void startAfter(long sequence) {
+        lastSequence = sequence;
+        bufferedAfter = sequence;
+        buffer.clear();
+        pending.clear();
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Changes after the given sequence (or from now on when it is null).
+     * The subscriber registers right away, so nothing committed in between is lost.
+     */
+    public synchronized Subscription subscribe(Long after) {
+        long requested = after == null ? lastSequence : Math.min(Math.max(after, 0), lastSequence);
+        long start = Math.max(requested, bufferedAfter);
+        Subscriber subscriber = new Subscriber(start);
+        for (BookChange change : buffer) {
+            if (change.sequence() > start) {
+                subscriber.sink.tryEmitNext(change);
+            }
+        }
+        subscribers.add(subscriber);
+        Flux<BookChange> changes = subscriber.sink.asFlux()
+                .doOnNext(change -> subscriber.delivered = change.sequence())
+                .doFinally(signal -> unsubscribe(subscriber));
+        return new Subscription(changes, requested, start);
+    }
+
+    /**
+     * Takes committed changes and moves on to `upTo`, the change log's lastSequence: every change up to it has
+     * been handed over (or rolled back), so the ones waiting up to there go out in order. The sequence numbers
+     * have gaps where writes rolled back.
+     */
+    public synchronized void publish(List<BookChange> changes, long upTo) {
+        changes.forEach(change -> pending.put(change.sequence(), change));
+        while (!pending.isEmpty() && pending.firstKey() <= upTo) {
+            BookChange change = pending.pollFirstEntry().getValue();
+            if (change.sequence() <= lastSequence) {
+                continue; // numbered before a restart of the feed
+            }
+            if (buffer.size() == bufferSize) {
+                bufferedAfter = buffer.removeFirst().sequence();
+            }
+            buffer.addLast(change);
+            lastSequence = change.sequence();
+            // Over a copy: completing a subscriber may unsubscribe it on this very thread
+            for (Subscriber subscriber : List.copyOf(subscribers)) {
+                if (!offer(subscriber, change)) {
+                    subscribers.remove(subscriber);
+                }
+            }
+        }
+        lastSequence = Math.max(lastSequence, upTo);
+    }
+
+    // False once the subscriber is gone or has been cut off for lagging
+    private boolean offer(Subscriber subscriber, BookChange change) {
+        if (subscriber.delivered < bufferedAfter) {
+            subscriber.sink.tryEmitComplete(); // whatever is queued still goes out first
+            return false;
+        }
+        return subscriber.sink.tryEmitNext(change).isSuccess();
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+}
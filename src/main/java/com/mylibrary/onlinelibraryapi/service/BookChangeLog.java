@@ -0,0 +1,230 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookChangeLogEntry;
+import com.mylibrary.onlinelibraryapi.repository.BookChangeLogRepository;
+import com.mylibrary.onlinelibraryapi.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for book changes. BookService appends every write to book_change_log inside the
+ * writing transaction, so the log holds exactly the committed changes and consumers can sync incrementally
+ * with changesSince. Sequence numbers come from the book_change_log_seq database sequence, so concurrent writers
+ * do not wait for each other. They are handed out in write order rather than commit order, though, and rolled
+ * back writes leave gaps. Readers therefore only get the log up to lastSequence, just below the oldest number
+ * still held by an open transaction, so a reader at sequence N can never miss a smaller number that commits
+ * later. Open numbers are tracked here, which is enough as the database is embedded in this process.
+ * Once committed, changes go on to the live BookChangeFeed, which falls back to the log for resumes
+ * that reach further back than its buffer.
+ */
+@Service
+@Timed(value = "library.service", description = "Service method timings, tagged with class and method")
+public class BookChangeLog implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(BookChangeLog.class);
+    private static final int BACKLOG_CHUNK_SIZE = 500;
+
+    private final BookChangeLogRepository changeLogRepository;
+    private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final BookChangeFeed bookChangeFeed;
+    private final TransactionTemplate transactionTemplate;
+
+    // Numbers handed out to transactions that have not finished yet, and the highest one handed out so far
+    private final TreeSet<Long> open = new TreeSet<>(); // guards itself and lastHandedOut
+    private long lastHandedOut;
+
+    // What the current transaction has appended, bound to it as a transaction resource
+    private static final class Appended {
+        final Set<Long> sequences = new HashSet<>();
+        final List<BookChange> changes = new ArrayList<>();
+    }
+
+    public BookChangeLog(BookChangeLogRepository changeLogRepository, BookRepository bookRepository,
+                         EntityManager entityManager, BookChangeFeed bookChangeFeed,
+                         TransactionTemplate transactionTemplate) {
+        this.changeLogRepository = changeLogRepository;
+        this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.bookChangeFeed = bookChangeFeed;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Draws one number to learn how far the sequence has got: everything handed out before this start lies below
+    // it. A sequence just created next to an existing log (ddl-auto=update) is moved past the log first.
+    @Override
+    public void afterSingletonsInstantiated() {
+        long lastSequence = transactionTemplate.execute(status -> {
+            long lastLogged = changeLogRepository.findLastSequence();
+            long drawn = ((Number) entityManager.createNativeQuery(nextValueQuery()).getSingleResult()).longValue();
+            if (drawn > lastLogged) {
+                return drawn;
+            }
+            entityManager.createNativeQuery("ALTER SEQUENCE " + BookChangeLogEntry.SEQUENCE
+                    + " RESTART WITH " + (lastLogged + 1)).executeUpdate();
+            log.info("Restarted {} at {}, after the existing change log", BookChangeLogEntry.SEQUENCE, lastLogged + 1);
+            return lastLogged;
+        });
+        synchronized (open) {
+            lastHandedOut = lastSequence;
+        }
+        bookChangeFeed.startAfter(lastSequence);
+    }
+
+    // Logs the change in the caller's transaction, which has to exist; the feed hears about it after commit
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(BookChangeEvent event) {
+        if (event.ids().isEmpty()) {
+            return;
+        }
+        Appended appended = appended();
+        Instant now = Instant.now();
+        for (int i = 0; i < event.ids().size(); i++) {
+            BookChangeLogEntry entry = new BookChangeLogEntry(null, event.type(), event.ids().get(i), now);
+            // Drawing the number and registering it as open happen together, so lastSequence cannot pass it
+            synchronized (open) {
+                entityManager.persist(entry);
+                open.add(entry.getSequence());
+                lastHandedOut = Math.max(lastHandedOut, entry.getSequence());
+            }
+            appended.sequences.add(entry.getSequence());
+            Book book = event.type() == BookChangeEvent.Type.DELETED ? null : event.books().get(i);
+            appended.changes.add(new BookChange(entry.getSequence(), event.type(), event.ids().get(i), book));
+        }
+    }
+
+    /**
+     * Sequence up to which every change is committed or rolled back: just below the oldest number still held
+     * by another open transaction. The current transaction's own changes count as finished, as it sees them.
+     */
+    public long lastSequence() {
+        Appended own = (Appended) TransactionSynchronizationManager.getResource(this);
+        synchronized (open) {
+            for (long sequence : open) {
+                if (own == null || !own.sequences.contains(sequence)) {
+                    return sequence - 1;
+                }
+            }
+            return lastHandedOut;
+        }
+    }
+
+    /**
+     * Up to `limit` changes after the given sequence, oldest first. Created and updated entries carry the
+     * book as it is now (none once it has been deleted), so replaying the deltas in order converges on the
+     * current catalog.
+     */
+    @Transactional(readOnly = true)
+    public List<BookChange> changesSince(long since, int limit) {
+        return withBooks(changeLogRepository.findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequenceAsc(
+                since, lastSequence(), Limit.of(limit)));
+    }
+
+    /**
+     * Changes after the given sequence, as the persisted log and then live from the feed.
+     * Only the part the feed no longer buffers is read from the database, chunk by chunk as it is consumed.
+     */
+    public Flux<BookChange> subscribe(Long after) {
+        BookChangeFeed.Subscription subscription = bookChangeFeed.subscribe(after);
+        if (subscription.feedAfter() == subscription.after()) {
+            return subscription.changes();
+        }
+        long upTo = subscription.feedAfter();
+        Flux<BookChange> backlog = Flux.<List<BookChange>, Long>generate(subscription::after, (last, sink) -> {
+                    List<BookChange> chunk = transactionTemplate.execute(status -> withBooks(changeLogRepository
+                            .findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequenceAsc(last, upTo,
+                                    Limit.of(BACKLOG_CHUNK_SIZE))));
+                    if (chunk.isEmpty()) {
+                        sink.complete();
+                        return last;
+                    }
+                    sink.next(chunk);
+                    return chunk.get(chunk.size() - 1).sequence();
+                })
+                .flatMapIterable(Function.identity())
+                .subscribeOn(Schedulers.boundedElastic()); // blocking JPA, kept off event loops
+        return Flux.concat(backlog, subscription.changes());
+    }
+
+    // The current transaction's changes, registering it for completion on its first append
+    private Appended appended() {
+        Appended appended = (Appended) TransactionSynchronizationManager.getResource(this);
+        if (appended == null) {
+            Appended newAppended = new Appended();
+            TransactionSynchronizationManager.bindResource(this, newAppended);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // A transaction started with REQUIRES_NEW appends its own changes meanwhile
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(BookChangeLog.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(BookChangeLog.this, newAppended);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BookChangeLog.this);
+                    finish(newAppended, status == STATUS_COMMITTED);
+                }
+            });
+            appended = newAppended;
+        }
+        return appended;
+    }
+
+    // Closes the transaction's numbers and moves the feed on to the new lastSequence. Rolled back numbers are
+    // never filled in, but closing them can release later commits the feed is holding back. Done under the lock
+    // so the feed gets every change before any lastSequence past it.
+    private void finish(Appended appended, boolean committed) {
+        synchronized (open) {
+            open.removeAll(appended.sequences);
+            bookChangeFeed.publish(committed ? appended.changes : List.of(), lastSequence());
+        }
+    }
+
+    private String nextValueQuery() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport()
+                .getSequenceNextValString(BookChangeLogEntry.SEQUENCE);
+    }
+
+    private List<BookChange> withBooks(List<BookChangeLogEntry> entries) {
+        Map<Long, Book> books = bookRepository.findAllById(entries.stream()
+                        .filter(entry -> entry.getType() != BookChangeEvent.Type.DELETED)
+                        .map(BookChangeLogEntry::getBookId)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return entries.stream()
+                .map(entry -> new BookChange(entry.getSequence(), entry.getType(), entry.getBookId(),
+                        entry.getType() == BookChangeEvent.Type.DELETED ? null : books.get(entry.getBookId())))
+                .toList();
+    }
+}
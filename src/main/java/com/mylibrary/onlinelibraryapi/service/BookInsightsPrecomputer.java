@@ -0,0 +1,118 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that fills in AI taglines ahead of time, so GET /books/{id}/ai-insights rarely has to
+ * wait for the model. Each pass walks the books table in keyset order one page at a time, looks up the
+ * stored insights of the whole page in one query and generates taglines only for books whose insight is
+ * missing or stale. Model calls are spaced to stay under `openai.insights.precompute.rate-per-minute`.
+ */
+@Component
+public class BookInsightsPrecomputer {
+    private static final Logger log = LoggerFactory.getLogger(BookInsightsPrecomputer.class);
+
+    private final BookService bookService;
+    private final BookInsightsService bookInsightsService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int concurrency;
+    private final Duration callInterval;
+
+    private volatile boolean running;
+    private volatile Instant passStartedAt;
+    private volatile Instant lastPassFinishedAt;
+    private volatile Long lastBookId;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong upToDate = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public record Progress(boolean running, Instant passStartedAt, Instant lastPassFinishedAt, Long lastBookId,
+                           long scanned, long upToDate, long generated, long failed) {
+    }
+
+    public BookInsightsPrecomputer(BookService bookService, BookInsightsService bookInsightsService,
+                                   @Value("${openai.insights.precompute.enabled:false}") boolean enabled,
+                                   @Value("${openai.insights.precompute.batch-size:100}") int batchSize,
+                                   @Value("${openai.insights.precompute.concurrency:4}") int concurrency,
+                                   @Value("${openai.insights.precompute.rate-per-minute:60}") int ratePerMinute) {
+        this.bookService = bookService;
+        this.bookInsightsService = bookInsightsService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.callInterval = Duration.ofMinutes(1).dividedBy(ratePerMinute);
+    }
+
+    @Scheduled(initialDelayString = "${openai.insights.precompute.initial-delay:1m}",
+            fixedDelayString = "${openai.insights.precompute.interval:10m}")
+    public void scheduledPass() {
+        if (enabled) {
+            runPass();
+        }
+    }
+
+    // One walk over the whole table; counters describe the current (or last) pass
+    public synchronized Progress runPass() {
+        running = true;
+        passStartedAt = Instant.now();
+        lastBookId = null;
+        scanned.set(0);
+        upToDate.set(0);
+        generated.set(0);
+        failed.set(0);
+        try {
+            List<Book> page;
+            do {
+                page = bookService.getBooksAfter(lastBookId, batchSize);
+                if (!page.isEmpty()) {
+                    precompute(page);
+                    lastBookId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == batchSize);
+            bookInsightsService.deleteOrphans();
+        } catch (RuntimeException e) {
+            log.warn("AI insight precompute pass stopped after book {}", lastBookId, e);
+        } finally {
+            running = false;
+            lastPassFinishedAt = Instant.now();
+        }
+        return getProgress();
+    }
+
+    public Progress getProgress() {
+        return new Progress(running, passStartedAt, lastPassFinishedAt, lastBookId,
+                scanned.get(), upToDate.get(), generated.get(), failed.get());
+    }
+
+    private void precompute(List<Book> page) {
+        List<Book> stale = bookInsightsService.findStale(page);
+        scanned.addAndGet(page.size());
+        upToDate.addAndGet(page.size() - stale.size());
+
+        // Failed books stay stale and are retried on the next pass
+        Flux.fromIterable(stale)
+                .delayElements(callInterval)
+                .flatMap(book -> bookInsightsService.refresh(book)
+                        .doOnSuccess(tagline -> generated.incrementAndGet())
+                        .onErrorResume(e -> {
+                            failed.incrementAndGet();
+                            log.debug("Could not precompute AI insight for book {}", book.getId(), e);
+                            return Mono.empty();
+                        }), concurrency)
+                .blockLast();
+    }
+}
@@ -0,0 +1,178 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mylibrary.onlinelibraryapi.exception.UpstreamException;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookInsight;
+import com.mylibrary.onlinelibraryapi.repository.BookInsightRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AI taglines for books.
+ * Generated taglines are stored per book together with a hash of the prompt inputs, so a book whose
+ * content did not change never hits the model again; recently used ones are also kept in memory, so
+ * a precomputed tagline is served without touching the database. Concurrent requests for the same book
+ * share one upstream call, and at most `openai.insights.max-concurrent` calls are in flight at a time;
+ * callers beyond that are turned away with a 503 instead of queueing.
+ */
+@Service
+public class BookInsightsService {
+    private static final Logger log = LoggerFactory.getLogger(BookInsightsService.class);
+
+    private final OpenAiClient openAiClient;
+    private final BookInsightRepository bookInsightRepository;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<Long, BookInsight> insightsById;
+
+    public BookInsightsService(OpenAiClient openAiClient, BookInsightRepository bookInsightRepository,
+                               @Value("${openai.insights.max-concurrent:20}") int maxConcurrent,
+                               @Value("${openai.insights.timeout:30s}") Duration timeout,
+                               @Value("${openai.insights.cache.maximum-size:100000}") long cacheSize) {
+        this.openAiClient = openAiClient;
+        this.bookInsightRepository = bookInsightRepository;
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeout = timeout;
+        this.insightsById = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public Mono<String> getTagline(Book book) {
+        String prompt = prompt(book);
+        String hash = contentHash(prompt);
+        BookInsight cached = insightsById.getIfPresent(book.getId());
+        if (cached != null && cached.getContentHash().equals(hash)) {
+            return Mono.just(cached.getTagline());
+        }
+        return Mono.fromCallable(() -> findTagline(book.getId(), hash))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty)
+                .switchIfEmpty(Mono.defer(() -> generate(book.getId(), prompt, hash)));
+    }
+
+    // The stored tagline, if it was generated from the book's current content
+    public Optional<String> findTagline(Long bookId, String hash) {
+        return bookInsightRepository.findById(bookId)
+                .map(this::remember)
+                .filter(insight -> insight.getContentHash().equals(hash))
+                .map(BookInsight::getTagline);
+    }
+
+    // The books whose tagline is missing or was generated from older content (one query for the whole list)
+    public List<Book> findStale(List<Book> books) {
+        Map<Long, String> storedHashes = new HashMap<>();
+        bookInsightRepository.findAllById(books.stream().map(Book::getId).toList())
+                .forEach(insight -> storedHashes.put(insight.getBookId(), insight.getContentHash()));
+        return books.stream()
+                .filter(book -> !contentHash(prompt(book)).equals(storedHashes.get(book.getId())))
+                .toList();
+    }
+
+    // Generates and stores a fresh tagline for the book
+    public Mono<String> refresh(Book book) {
+        String prompt = prompt(book);
+        return generate(book.getId(), prompt, contentHash(prompt));
+    }
+
+    // Drops insights whose book no longer exists
+    @Transactional
+    public int deleteOrphans() {
+        int deleted = bookInsightRepository.deleteOrphans();
+        if (deleted > 0) {
+            insightsById.invalidateAll();
+        }
+        return deleted;
+    }
+
+    // Generates and stores a tagline; concurrent calls for the same book and content share one upstream call
+    public Mono<String> generate(Long bookId, String prompt, String hash) {
+        String key = bookId + ":" + hash;
+        return inFlight.computeIfAbsent(key, k -> callModel(prompt)
+                .flatMap(tagline -> store(bookId, hash, tagline))
+                .doFinally(signal -> inFlight.remove(k))
+                .cache());
+    }
+
+    public String prompt(Book book) {
+        String prompt = "Generate a catchy tagline for this book: " + book.getTitle() + " by " + book.getAuthor() + ".";
+        if (book.getDescription() != null) {
+            prompt += " Description: " + book.getDescription();
+        }
+        return prompt;
+    }
+
+    // Covers the model too, so switching models regenerates every tagline
+    public String contentHash(String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(openAiClient.getModel().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(prompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Mono<String> callModel(String prompt) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Mono.error(new UpstreamException(HttpStatus.SERVICE_UNAVAILABLE,
+                        Map.of("error", "Too many AI insight requests in progress, try again later")));
+            }
+            return openAiClient.complete(prompt)
+                    .timeout(timeout)
+                    .doFinally(signal -> permits.release());
+        }).onErrorMap(e -> !(e instanceof UpstreamException), BookInsightsService::toUpstreamException);
+    }
+
+    // A failed write only costs us a regeneration later, so it does not fail the request
+    private Mono<String> store(Long bookId, String hash, String tagline) {
+        return Mono.fromRunnable(() -> remember(bookInsightRepository.save(new BookInsight(bookId, hash, tagline, Instant.now()))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Could not store AI insight for book {}", bookId, e);
+                    return Mono.empty();
+                })
+                .thenReturn(tagline);
+    }
+
+    private BookInsight remember(BookInsight insight) {
+        insightsById.put(insight.getBookId(), insight);
+        return insight;
+    }
+
+    private static UpstreamException toUpstreamException(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return new UpstreamException(HttpStatus.GATEWAY_TIMEOUT, Map.of("error", "OpenAI did not respond in time"));
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            return new UpstreamException(HttpStatus.BAD_GATEWAY, Map.of("error",
+                    "OpenAI responded with status " + responseException.getStatusCode().value()));
+        }
+        log.warn("OpenAI call failed", e);
+        return new UpstreamException(HttpStatus.BAD_GATEWAY, Map.of("error", "OpenAI call failed"));
+    }
+}
@@ -1,60 +1,355 @@
 package com.mylibrary.onlinelibraryapi.service;
 
+import com.mylibrary.onlinelibraryapi.cache.BookCache;
+import com.mylibrary.onlinelibraryapi.catalog.ColumnarCatalog;
 import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookField;
+import com.mylibrary.onlinelibraryapi.model.BookPatch;
+import com.mylibrary.onlinelibraryapi.model.BookSelection;
 import com.mylibrary.onlinelibraryapi.repository.BookRepository;
+import com.mylibrary.onlinelibraryapi.search.BookFacets;
+import com.mylibrary.onlinelibraryapi.search.BookSearchIndex;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.search.SearchQuery;
+import com.mylibrary.onlinelibraryapi.search.TextNormalizer;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "library.service", description = "Service method timings, tagged with class and method")
 public class BookService {
     private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookFacets bookFacets;
+    private final BookCache bookCache;
+    private final ColumnarCatalog columnarCatalog;
+    private final BookChangeLog bookChangeLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int bulkChunkSize;
+    // Concurrent identical reads share one query (see SingleFlight)
+    private final SingleFlight<Long, Optional<Book>> bookReads;
+    private final SingleFlight<SearchKey, List<Book>> searches;
 
-    public BookService(BookRepository bookRepository) {
+    private record SearchKey(SearchMode mode, String title, String author, String text, int page, int size) {
+    }
+
+    public BookService(BookRepository bookRepository, EntityManager entityManager,
+                       BookSearchIndex bookSearchIndex, BookFacets bookFacets, BookCache bookCache,
+                       ColumnarCatalog columnarCatalog, BookChangeLog bookChangeLog, ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate,
+                       Validator validator, MeterRegistry meterRegistry,
+                       @Value("${library.bulk.chunk-size:500}") int bulkChunkSize) {
         this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookFacets = bookFacets;
+        this.bookCache = bookCache;
+        this.columnarCatalog = columnarCatalog;
+        this.bookChangeLog = bookChangeLog;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.bulkChunkSize = bulkChunkSize;
+        this.bookReads = new SingleFlight<>("book-by-id", meterRegistry);
+        this.searches = new SingleFlight<>("search", meterRegistry);
     }
 
+    // A duplicate ISBN surfaces as a DataIntegrityViolationException from the unique constraint, as in updateBook.
+    // The insert is flushed right away so that happens here rather than at commit. An ISBN the cache already holds
+    // is rejected up front with a DuplicateKeyException (a DataIntegrityViolationException too); the cache can
+    // only tell that an ISBN is taken, so the constraint still decides every other insert.
+    @Transactional
     public Book createBook(Book book) {
-        return bookRepository.save(book);
+        // The ISBN of a cached book is known to be taken, so that duplicate costs no round trip
+        if (bookCache.containsIsbn(book.getIsbn())) {
+            throw new DuplicateKeyException("A book with ISBN " + book.getIsbn() + " already exists");
+        }
+        Book savedBook = bookRepository.saveAndFlush(book);
+        publish(BookChangeEvent.created(List.of(savedBook)));
+        return savedBook;
+    }
+
+    // Inserts a chunk of already validated books with JDBC batching, then detaches them to keep the session small
+    @Transactional
+    public List<Book> createBooks(List<Book> books) {
+        List<Book> savedBooks = bookRepository.saveAll(books);
+        bookRepository.flush(); // through the repository, so a duplicate ISBN is a DataIntegrityViolationException
+        publish(BookChangeEvent.created(savedBooks));
+        savedBooks.forEach(entityManager::detach);
+        return savedBooks;
+    }
+
+    public Set<String> findExistingIsbns(Collection<String> isbns) {
+        return isbns.isEmpty() ? Set.of() : bookRepository.findExistingIsbns(isbns);
     }
 
+    // A cached book with this ISBN answers without a query; a cache miss still has to ask the database
     public boolean doesBookExistByIsbn(String isbn) {
-        return bookRepository.existsByIsbn(isbn);
+        return bookCache.containsIsbn(isbn) || bookRepository.existsByIsbn(isbn);
     }
 
-    public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+    // Returns at most `limit` books with an id greater than `afterId` (or from the start when null)
+    public List<Book> getBooksAfter(Long afterId, int limit) {
+        if (columnarCatalog.isEnabled()) {
+            return columnarCatalog.booksAfter(afterId, limit);
+        }
+        if (afterId == null) {
+            return bookRepository.findAllByOrderByIdAsc(Limit.of(limit));
+        }
+        return bookRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit));
+    }
+
+    // Same page, but only the selected columns are read (and the cache is bypassed)
+    public List<Map<String, Object>> getBookFieldsAfter(Set<BookField> fields, Long afterId, int limit) {
+        return bookRepository.findFieldsAfter(fields, afterId, limit);
     }
 
+    // Hands every book to the consumer in id order, detaching each one so memory stays flat
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    // With the columnar catalog enabled it answers every read of whole books on its own.
+    // Otherwise concurrent lookups of the same id share one cache lookup or query, and one result.
     public Optional<Book> getBookById(Long id) {
-        return bookRepository.findById(id);
+        if (columnarCatalog.isEnabled()) {
+            return columnarCatalog.get(id);
+        }
+        return coalesced(bookReads, id, () -> bookCache.get(id, bookRepository::findById));
     }
 
-    public Optional<Book> updateBook(Long id, Book updatedBook) {
-        return bookRepository.findById(id).map(book -> {
-            book.setTitle(updatedBook.getTitle());
-            book.setAuthor(updatedBook.getAuthor());
-            book.setIsbn(updatedBook.getIsbn());
-            book.setPublicationYear(updatedBook.getPublicationYear());
-            book.setDescription(updatedBook.getDescription());
-            return bookRepository.save(book);
+    // One UPDATE statement; an empty result means there is no book with this id.
+    // With an expected version the update only applies to that version, otherwise an
+    // OptimisticLockingFailureException is thrown (costing one more query to tell the two cases apart).
+    // Either way the UPDATE itself returns the version it left, so the result always carries it.
+    // A duplicate ISBN surfaces as a DataIntegrityViolationException from the unique constraint.
+    @Transactional
+    public Optional<Book> updateBook(Long id, Book updatedBook, Long expectedVersion) {
+        Book book = new Book(id, updatedBook.getTitle(), updatedBook.getAuthor(), updatedBook.getIsbn(),
+                updatedBook.getPublicationYear(), updatedBook.getDescription());
+        Set<ConstraintViolation<Book>> violations = validator.validate(book);
+        if (!violations.isEmpty()) {
+            // A missing book is still reported as missing rather than invalid
+            if (!bookRepository.existsById(id)) {
+                return Optional.empty();
+            }
+            throw new ConstraintViolationException(violations);
+        }
+        Optional<Long> version = bookRepository.updateById(id, book, expectedVersion);
+        if (version.isEmpty()) {
+            if (expectedVersion != null && bookRepository.existsById(id)) {
+                throw new OptimisticLockingFailureException(
+                        String.format("Book with id %d is no longer at version %d", id, expectedVersion));
+            }
+            return Optional.empty();
+        }
+        book.setVersion(version.get());
+        publish(BookChangeEvent.updated(List.of(book)));
+        return Optional.of(book);
+    }
+
+    // Version of the book if the cache holds it; lets conditional GETs skip the repository entirely
+    public Optional<Long> getCachedVersion(Long id) {
+        if (columnarCatalog.isEnabled()) {
+            return columnarCatalog.version(id);
+        }
+        return bookCache.cachedVersion(id);
+    }
+
+    // One DELETE statement; returns false when there was no book with this id
+    @Transactional
+    public boolean deleteBook(Long id) {
+        if (bookRepository.bulkDelete(List.of(id)) == 0) {
+            return false;
+        }
+        publish(BookChangeEvent.deleted(List.of(id)));
+        return true;
+    }
+
+    // Applies the patch to every selected book with one UPDATE per chunk; returns the number of books updated
+    public long updateBooks(BookSelection selection, BookPatch patch) {
+        return inChunks(selection, ids -> {
+            int updated = bookRepository.bulkUpdate(ids, patch);
+            publish(BookChangeEvent.updated(bookRepository.findAllById(ids)));
+            return updated;
         });
     }
 
-    public void deleteBook(Long id) {
-        bookRepository.deleteById(id);
+    // Deletes every selected book with one DELETE per chunk; returns the number of books deleted
+    public long deleteBooks(BookSelection selection) {
+        return inChunks(selection, ids -> {
+            int deleted = bookRepository.bulkDelete(ids);
+            publish(BookChangeEvent.deleted(ids));
+            return deleted;
+        });
+    }
+
+    // Every write goes to the change log within the writing transaction first, then to the in-memory views
+    private void publish(BookChangeEvent event) {
+        bookChangeLog.append(event);
+        eventPublisher.publishEvent(event);
+        // Reads in flight may have started before this write; once it commits, new reads must not join them
+        TransactionCallbacks.afterCommit(() -> {
+            event.ids().forEach(bookReads::forget);
+            searches.forgetAll();
+        });
     }
 
-    public List<Book> searchBooks(String title, String author) {
-        if (title != null && author != null) {
-            return bookRepository.findByTitleAndAuthor(title, author);
-        } else if (title != null) {
-            return bookRepository.findByTitleContainingIgnoreCase(title);
-        } else if (author != null) {
-            return bookRepository.findByAuthorContainingIgnoreCase(author);
-        } else {
-            return bookRepository.findAll();
+    // Reads inside a transaction may see its uncommitted writes, so they never share results with other callers
+    private static <K, V> V coalesced(SingleFlight<K, V> flights, K key, Supplier<V> read) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return read.get();
         }
+        return flights.run(key, read);
+    }
+
+    private record ChunkResult(List<Long> ids, int affected) {
+    }
+
+    // Resolves the selection chunk by chunk and runs the action on each chunk's ids in its own transaction
+    private long inChunks(BookSelection selection, Function<List<Long>, Integer> action) {
+        long affected = 0;
+        if (selection.hasIds()) {
+            List<Long> ids = selection.getIds().stream().filter(Objects::nonNull).distinct().sorted().toList();
+            for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + bulkChunkSize, ids.size()));
+                affected += runChunk(() -> bookRepository.findIdsMatching(chunk, selection.getAuthor(),
+                        selection.getFromYear(), selection.getToYear()), action).affected();
+            }
+            return affected;
+        }
+
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            long lastId = afterId;
+            ChunkResult result = runChunk(() -> bookRepository.findIdsMatching(lastId, selection.getAuthor(),
+                    selection.getFromYear(), selection.getToYear(), Limit.of(bulkChunkSize)), action);
+            affected += result.affected();
+            if (result.ids().size() < bulkChunkSize) {
+                return affected;
+            }
+            afterId = result.ids().get(result.ids().size() - 1);
+        }
+    }
+
+    private ChunkResult runChunk(Supplier<List<Long>> idFinder, Function<List<Long>, Integer> action) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = idFinder.get();
+            return new ChunkResult(ids, ids.isEmpty() ? 0 : action.apply(ids));
+        });
+    }
+
+    // Contains mode ranks through the in-memory index, prefix mode scans the normalized column indexes
+    // (and ignores text). Either way only the requested page is loaded, from the columnar catalog when it is
+    // enabled and from the database otherwise. Identical concurrent searches share one run and one result.
+    public List<Book> searchBooks(SearchMode mode, String title, String author, String text, int page, int size) {
+        return coalesced(searches, new SearchKey(mode, title, author, text, page, size),
+                () -> findBooks(mode, title, author, text, page, size));
+    }
+
+    private List<Book> findBooks(SearchMode mode, String title, String author, String text, int page, int size) {
+        List<Long> ids = searchIds(mode, title, author, text, page, size);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (columnarCatalog.isEnabled()) {
+            return columnarCatalog.getAll(ids);
+        }
+        Map<Long, Book> booksById = bookRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return ids.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Same ranking, but only the selected columns of the page are read
+    public List<Map<String, Object>> searchBookFields(Set<BookField> fields, SearchMode mode, String title,
+                                                      String author, String text, int page, int size) {
+        List<Long> ids = searchIds(mode, title, author, text, page, size);
+        Map<Object, Map<String, Object>> rowsById = bookRepository.findFieldsByIds(fields, ids).stream()
+                .collect(Collectors.toMap(row -> row.get(BookField.ID.property()), Function.identity()));
+        return ids.stream()
+                .map(rowsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Served from the in-memory counters, never from a GROUP BY
+    public BookFacets.Facets getFacets(String author, Integer decade, int limit) {
+        return bookFacets.facets(author, decade, limit);
+    }
+
+    private List<Long> searchIds(SearchMode mode, String title, String author, String text, int page, int size) {
+        if (mode == SearchMode.CONTAINS) {
+            return bookSearchIndex.search(new SearchQuery(title, author, text), (long) page * size, size);
+        }
+        String titlePattern = TextNormalizer.prefixPattern(title);
+        String authorPattern = TextNormalizer.prefixPattern(author);
+        PageRequest pageRequest = PageRequest.of(page, size);
+        if (titlePattern == null && authorPattern == null) {
+            return List.of();
+        }
+        if (authorPattern == null) {
+            return bookRepository.findIdsByTitlePrefix(titlePattern, pageRequest);
+        }
+        if (titlePattern == null) {
+            return bookRepository.findIdsByAuthorPrefix(authorPattern, pageRequest);
+        }
+        return bookRepository.findIdsByTitleAndAuthorPrefix(titlePattern, authorPattern, pageRequest);
+    }
+
+    // Fills the normalized search columns of rows written before they existed, one chunk per transaction
+    public long backfillSearchColumns() {
+        long filled = 0;
+        long afterId = Long.MIN_VALUE;
+        List<Book> chunk;
+        do {
+            long from = afterId;
+            chunk = transactionTemplate.execute(status -> {
+                List<Book> books = bookRepository.findMissingSearchColumns(from, Limit.of(bulkChunkSize));
+                books.forEach(Book::updateSearchColumns); // flushed as updates on commit
+                return books;
+            });
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+                filled += chunk.size();
+            }
+        } while (chunk.size() == bulkChunkSize);
+        return filled;
     }
 }
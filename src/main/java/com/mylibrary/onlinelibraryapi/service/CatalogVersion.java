@@ -0,0 +1,32 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Change counter for the whole catalog, behind the ETag of collection responses.
+ * It moves only after a write has committed, so a client can never cache pre-commit data under a new tag.
+ * The start time is part of the tag, so tags from before a restart never match. There is no Last-Modified:
+ * it has whole seconds, and a write in the same second as a response would leave If-Modified-Since answering 304.
+ */
+@Component
+public class CatalogVersion {
+    private final long epoch = System.currentTimeMillis();
+    private long counter;
+
+    public record Snapshot(String etag) {
+    }
+
+    public synchronized Snapshot current() {
+        return new Snapshot("\"c" + Long.toString(epoch, 36) + "-" + counter + "\"");
+    }
+
+    @EventListener
+    public void onBookChange(BookChangeEvent event) {
+        TransactionCallbacks.afterCommit(this::increment);
+    }
+
+    private synchronized void increment() {
+        counter++;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+// Thin wrapper around the chat completions API
+@Component
+public class OpenAiClient {
+    private final WebClient openAiWebClient;
+    private final String model;
+
+    public OpenAiClient(WebClient openAiWebClient, @Value("${openai.model:gpt-4}") String model) {
+        this.openAiWebClient = openAiWebClient;
+        this.model = model;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    // Sends a single user message and returns the text of the first choice
+    public Mono<String> complete(String prompt) {
+        Map<String, Object> request = Map.of(
+                "model", model,
+                "messages", List.of(Map.of("role", "user", "content", prompt)));
+        return openAiWebClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> response.path("choices").path(0).path("message").path("content").asText().trim())
+                .filter(content -> !content.isEmpty())
+                .switchIfEmpty(Mono.error(new IllegalStateException("OpenAI returned no completion")));
+    }
+}
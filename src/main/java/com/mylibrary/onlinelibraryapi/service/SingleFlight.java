@@ -0,0 +1,75 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time: callers arriving while a call for their key is in flight wait for it
+ * and get the same result (or exception) instead of making their own. Nothing is kept once the call returns,
+ * so this only deduplicates concurrent work; results are shared between callers and must not be modified.
+ * Counted as library.reads.executed and library.reads.coalesced, tagged with the name of the read.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("library.reads.executed")
+                .description("Reads that ran, as opposed to joining an identical one in flight")
+                .tag("read", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("library.reads.coalesced")
+                .description("Reads that were answered by an identical one already in flight")
+                .tag("read", name)
+                .register(meterRegistry);
+    }
+
+    public V run(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+        executed.increment();
+        try {
+            V value = call.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    // Callers arriving from now on start a new call rather than joining the one in flight, whose result may be stale
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mylibrary.onlinelibraryapi.service;
+
+import org.springframework.core.Ordered;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Small helpers for running code once the current transaction (if any) has finished
+public final class TransactionCallbacks {
+    private static final Object ROLLBACK_ACTIONS = new Object();
+
+    private TransactionCallbacks() {
+    }
+
+    // Runs the action after a successful commit, or right away when there is no transaction
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Runs the action once the current transaction has committed or rolled back, or right away when there is none
+    public static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * The changes the current transaction has made to an in-memory view, kept under `key` until it finishes.
+     * `start` creates them on the first change; `finish` gets them once the transaction has committed (true) or
+     * rolled back (false). Views finish ahead of the change log's own completion callback, so a commit has reached
+     * them by the time its change log number counts as committed. Must be called within a transaction.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T pending(Object key, Supplier<T> start, BiConsumer<T, Boolean> finish) {
+        T pending = (T) TransactionSynchronizationManager.getResource(key);
+        if (pending == null) {
+            T newPending = start.get();
+            TransactionSynchronizationManager.bindResource(key, newPending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+
+                // A transaction started with REQUIRES_NEW collects its own changes meanwhile
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(key);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(key, newPending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                    finish.accept(newPending, status == STATUS_COMMITTED);
+                }
+            });
+            pending = newPending;
+        }
+        return pending;
+    }
+
+    // Runs the action only if the current transaction rolls back.
+    // Actions run in reverse registration order so several undo steps on the same data unwind correctly.
+    @SuppressWarnings("unchecked")
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Deque<Runnable> actions = (Deque<Runnable>) TransactionSynchronizationManager.getResource(ROLLBACK_ACTIONS);
+        if (actions == null) {
+            Deque<Runnable> newActions = new ArrayDeque<>();
+            TransactionSynchronizationManager.bindResource(ROLLBACK_ACTIONS, newActions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ROLLBACK_ACTIONS);
+                    if (status == STATUS_ROLLED_BACK) {
+                        newActions.forEach(Runnable::run);
+                    }
+                }
+            });
+            actions = newActions;
+        }
+        actions.push(action);
+    }
+}
@@ -0,0 +1,13 @@
+-- The books table as Hibernate generated it with ddl-auto=update, before versioned migrations.
+-- Databases created that way have no history table: they are baselined at V0, pass through this script
+-- unchanged and are brought up to date by V2 along with new databases.
+
+CREATE TABLE IF NOT EXISTS books (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    title            VARCHAR(255) NOT NULL,
+    author           VARCHAR(255) NOT NULL,
+    isbn             VARCHAR(255) NOT NULL UNIQUE,
+    publication_year INTEGER      NOT NULL CHECK (publication_year >= 1450 AND publication_year <= 2050),
+    description      CLOB,
+    PRIMARY KEY (id)
+);
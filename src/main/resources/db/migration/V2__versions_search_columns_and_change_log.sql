@@ -0,0 +1,46 @@
+-- Brings the V1 books table up to the current schema. Databases that ran ddl-auto=update with later versions
+-- of the app already have part of it, so every step is a no-op where its object already exists.
+
+-- Optimistic locking and the normalized search columns (filled in at startup, see BookService)
+ALTER TABLE books ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE books ADD COLUMN IF NOT EXISTS normalized_title VARCHAR(255);
+ALTER TABLE books ADD COLUMN IF NOT EXISTS normalized_author VARCHAR(255);
+
+CREATE INDEX IF NOT EXISTS idx_books_normalized_title ON books (normalized_title);
+CREATE INDEX IF NOT EXISTS idx_books_normalized_author ON books (normalized_author);
+
+-- Ids come from the pooled books_seq instead of the IDENTITY column (see Book). The sequence starts a block
+-- above the existing ids, and never below where an existing sequence already is.
+ALTER TABLE books ALTER COLUMN id DROP IDENTITY;
+CREATE SEQUENCE IF NOT EXISTS books_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE books_seq RESTART WITH (
+    SELECT GREATEST(COALESCE(MAX(id), 0) + 50,
+                    (SELECT base_value FROM information_schema.sequences WHERE sequence_name = 'BOOKS_SEQ'))
+    FROM books);
+
+CREATE TABLE IF NOT EXISTS book_insights (
+    book_id      BIGINT                      NOT NULL,
+    content_hash VARCHAR(64)                 NOT NULL,
+    tagline      VARCHAR(2000)               NOT NULL,
+    generated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (book_id)
+);
+
+CREATE TABLE IF NOT EXISTS book_change_log (
+    sequence   BIGINT                                 NOT NULL,
+    type       ENUM ('CREATED', 'DELETED', 'UPDATED') NOT NULL,
+    book_id    BIGINT                                 NOT NULL,
+    changed_at TIMESTAMP(6) WITH TIME ZONE            NOT NULL,
+    PRIMARY KEY (sequence)
+);
+
+CREATE TABLE IF NOT EXISTS change_log_counter (
+    id            INTEGER NOT NULL,
+    last_sequence BIGINT  NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- The WHERE sits outside the aggregate: MAX over no rows still yields a row to insert
+INSERT INTO change_log_counter (id, last_sequence)
+SELECT 1, (SELECT COALESCE(MAX(sequence), 0) FROM book_change_log)
+WHERE NOT EXISTS (SELECT 1 FROM change_log_counter);
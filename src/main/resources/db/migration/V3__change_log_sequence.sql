@@ -0,0 +1,10 @@
+-- Change log numbers come from book_change_log_seq instead of the change_log_counter row (see BookChangeLog),
+-- continuing after every number the counter handed out, and never below where an existing sequence already is.
+CREATE SEQUENCE IF NOT EXISTS book_change_log_seq START WITH 1 INCREMENT BY 1;
+ALTER SEQUENCE book_change_log_seq RESTART WITH (
+    SELECT GREATEST(COALESCE(MAX(sequence), 0) + 1,
+                    (SELECT COALESCE(MAX(last_sequence), 0) + 1 FROM change_log_counter),
+                    (SELECT base_value FROM information_schema.sequences WHERE sequence_name = 'BOOK_CHANGE_LOG_SEQ'))
+    FROM book_change_log);
+
+DROP TABLE IF EXISTS change_log_counter;
@@ -0,0 +1,138 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.OnlineLibraryApiApplication;
+import com.mylibrary.onlinelibraryapi.catalog.ColumnarCatalog;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.repository.BookRepository;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Loads the same catalog three ways and measures the heap each one retains, per book: as entities managed by
+ * a Hibernate session (what a findAll holds until its transaction ends), as detached entities (what a cache
+ * of Book objects holds), and as the columnar catalog.
+ * Heap use is sampled after forcing a GC, so the figures are approximate.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=CatalogMemoryBenchmark [-Dcatalog.books=200000]
+ * The report is written to target/catalog-memory-report.json (or -Dcatalog.report=...).
+ */
+@Tag("benchmark")
+class CatalogMemoryBenchmark {
+    private final int books = Integer.getInteger("catalog.books", 100_000);
+    private final File report = new File(System.getProperty("catalog.report", "target/catalog-memory-report.json"));
+
+    private record Result(String representation, long bytes, double bytesPerBook) {
+    }
+
+    @Test
+    void compareRepresentations() throws Exception {
+        FileSystemUtils.deleteRecursively(new File("target/catalog-memory"));
+        List<Result> results = new ArrayList<>();
+        ColumnarCatalog.Stats estimate;
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OnlineLibraryApiApplication.class)
+                .profiles("test")
+                .run("--spring.main.web-application-type=none",
+                        // A file database, so loaded strings are not shared with an in-memory H2's own copies
+                        "--spring.datasource.url=jdbc:h2:file:./target/catalog-memory/librarydb",
+                        "--openai.api.key=benchmark",
+                        "--logging.level.root=WARN")) {
+            BookService bookService = app.getBean(BookService.class);
+            BookRepository bookRepository = app.getBean(BookRepository.class);
+            TransactionTemplate transactionTemplate = app.getBean(TransactionTemplate.class);
+            load(bookService);
+
+            // Each representation is measured by how much heap is freed when it is dropped: reading the books
+            // also leaves driver and session buffers behind, which would otherwise be counted too
+            List<Book> detached = transactionTemplate.execute(status -> bookRepository.findAll());
+            ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+            detached.forEach(catalog::add);
+            assertThat(catalog.size()).isEqualTo(books);
+            estimate = catalog.stats();
+
+            long withBoth = usedHeapAfterGc();
+            Reference.reachabilityFence(catalog);
+            catalog = null;
+            long withEntities = usedHeapAfterGc();
+            Reference.reachabilityFence(detached);
+            detached = null;
+            long empty = usedHeapAfterGc();
+
+            long withManaged = transactionTemplate.execute(status -> {
+                List<Book> all = bookRepository.findAll();
+                long used = usedHeapAfterGc();
+                Reference.reachabilityFence(all);
+                return used;
+            });
+            results.add(result("managed entities", withManaged - usedHeapAfterGc()));
+            results.add(result("detached entities", withEntities - empty));
+            results.add(result("columnar catalog", withBoth - withEntities));
+        }
+
+        System.out.printf("%n%-20s %14s %14s%n", "representation", "heap KB", "bytes/book");
+        results.forEach(result -> System.out.printf("%-20s %14d %14.0f%n", result.representation(),
+                result.bytes() / 1024, result.bytesPerBook()));
+        System.out.printf("Columnar catalog estimate: %.0f bytes/book (columns %d KB, text %d KB, %d authors)%n",
+                estimate.bytesPerBook(), estimate.columnBytes() / 1024, estimate.textBytes() / 1024,
+                estimate.authors());
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", Instant.now().toString());
+        json.put("books", books);
+        json.put("results", results);
+        json.put("columnarEstimate", Map.of("bytesPerBook", estimate.bytesPerBook(),
+                "columnBytes", estimate.columnBytes(), "textBytes", estimate.textBytes(),
+                "dictionaryBytes", estimate.dictionaryBytes(), "authors", estimate.authors()));
+        report.getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report, json);
+        System.out.println("Report written to " + report.getAbsolutePath());
+
+        assertThat(results.get(2).bytesPerBook()).isLessThan(results.get(1).bytesPerBook());
+    }
+
+    private void load(BookService bookService) {
+        for (int loaded = 0; loaded < books; loaded += 1000) {
+            List<Book> chunk = new ArrayList<>(1000);
+            for (int n = loaded; n < Math.min(loaded + 1000, books); n++) {
+                chunk.add(new Book("The collected stories, volume " + n, "Author number " + (n % 5000),
+                        "978%010d".formatted(n), 1900 + n % 120,
+                        "A collection of short stories first published in " + (1900 + n % 120)
+                                + ", reissued with a new introduction and notes."));
+            }
+            bookService.createBooks(chunk);
+        }
+    }
+
+    private Result result(String representation, long bytes) {
+        return new Result(representation, bytes, (double) bytes / books);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,82 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.catalog.CatalogSnapshot;
+import com.mylibrary.onlinelibraryapi.catalog.ColumnarCatalog;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times writing the columnar catalog to a snapshot file and restoring it, which is what a warm start costs
+ * before the change log catch-up. The books are generated in memory, no database is involved.
+ * Restores are repeated and the best run reported, the first ones also paying for JIT warm-up and a cold page cache.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=CatalogSnapshotBenchmark [-Dsnapshot.books=5000000 -DargLine=-Xmx4g]
+ * The report is written to target/catalog-snapshot-report.json (or -Dsnapshot.report=...).
+ */
+@Tag("benchmark")
+class CatalogSnapshotBenchmark {
+    private static final int RESTORES = 5;
+
+    private final int books = Integer.getInteger("snapshot.books", 1_000_000);
+    private final File report = new File(System.getProperty("snapshot.report", "target/catalog-snapshot-report.json"));
+
+    @Test
+    void writeAndRestore() throws Exception {
+        Path path = Path.of("target/catalog-snapshot/catalog.snapshot");
+        ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        for (int n = 0; n < books; n++) {
+            Book book = new Book("The collected stories, volume " + n, "Author number " + (n % 5000),
+                    "978%010d".formatted(n), 1900 + n % 120,
+                    "A collection of short stories first published in " + (1900 + n % 120)
+                            + ", reissued with a new introduction and notes.");
+            book.setId((long) n + 1);
+            book.setVersion(0L);
+            catalog.add(book);
+        }
+
+        long start = System.nanoTime();
+        catalog.writeSnapshot(path, books);
+        long writeMillis = (System.nanoTime() - start) / 1_000_000;
+        long fileBytes = Files.size(path);
+        catalog = null; // only the restored copy is kept from here on
+
+        long bestRestoreMillis = Long.MAX_VALUE;
+        CatalogSnapshot.Header header = null;
+        for (int i = 0; i < RESTORES; i++) {
+            ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+            start = System.nanoTime();
+            header = restored.restoreSnapshot(path);
+            bestRestoreMillis = Math.min(bestRestoreMillis, (System.nanoTime() - start) / 1_000_000);
+            assertThat(restored.size()).isEqualTo(books);
+            assertThat(restored.get(books)).hasValueSatisfying(book ->
+                    assertThat(book.getTitle()).isEqualTo("The collected stories, volume " + (books - 1)));
+        }
+
+        System.out.printf("%nSnapshot of %d books: %d MB, written in %d ms, restored in %d ms (best of %d)%n",
+                books, fileBytes >> 20, writeMillis, bestRestoreMillis, RESTORES);
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", Instant.now().toString());
+        json.put("books", books);
+        json.put("fileBytes", fileBytes);
+        json.put("writeMillis", writeMillis);
+        json.put("restoreMillis", bestRestoreMillis);
+        json.put("formatVersion", header.formatVersion());
+        report.getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report, json);
+        System.out.println("Report written to " + report.getAbsolutePath());
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,343 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Open-model HTTP load test: seeds a catalog, then fires a weighted mix of create/get/update/delete/search
+ * requests at a fixed arrival rate and records per-endpoint latency in HdrHistograms.
+ * Latency is measured from each request's scheduled start, not from when it was actually sent, so a
+ * stalled server shows up in the tail instead of silently lowering the request rate (coordinated
+ * omission). Service time (actual send to response) is recorded next to it.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=LoadTestBenchmark [-Dload.rate=500 -Dload.duration=PT30S ...]
+ * The report is written to target/load-report.json (or -Dload.report=...).
+ * Process CPU time (server and load generator together) is reported too, so stacks can be compared per core;
+ * see ReactiveLoadTestBenchmark for the WebFlux + R2DBC one.
+ */
+@Tag("benchmark")
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:load-test", "openai.api.key=load-test",
+                "logging.level.root=WARN"})
+class LoadTestBenchmark {
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+    private static final String[] WORDS = {"Shadow", "River", "Empire", "Garden", "Winter", "Silent", "Crown",
+            "Ocean", "Forgotten", "Glass", "Iron", "Midnight", "Storm", "Library", "Secret", "Golden"};
+    private static final String[] AUTHORS = {"Tolkien", "Orwell", "Austen", "Dickens", "Woolf", "Hemingway",
+            "Tolstoy", "Shelley", "Bronte", "Kafka", "Borges", "Morrison"};
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    enum Operation { CREATE, GET, UPDATE, DELETE, SEARCH }
+
+    // Configuration, overridable with -Dload.* system properties
+    private final int books = Integer.getInteger("load.books", 10_000);
+    private final int rate = Integer.getInteger("load.rate", 200); // requests per second
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT5S"));
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT20S"));
+    private final long seed = Long.getLong("load.seed", 42L);
+    private final String mix = System.getProperty("load.mix", "get=60,search=20,create=10,update=5,delete=5");
+    private final File report = new File(System.getProperty("load.report", "target/" + reportName()));
+    // Concurrent updates of the same book may legitimately fail now and then
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final AtomicLong isbnSequence = new AtomicLong();
+    private final Queue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    private long[] seededIds;
+    private String baseUrl;
+
+    private static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final Histogram serviceTime = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+    }
+
+    @Test
+    void runLoad() throws Exception {
+        baseUrl = "http://localhost:" + port + "/books";
+        seed();
+
+        Operation[] schedule = schedule();
+        run(schedule, warmup, new EnumMap<>(Operation.class)); // results discarded
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        Instant start = Instant.now();
+        long cpuStart = processCpuNanos();
+        run(schedule, duration, stats);
+        Duration elapsed = Duration.between(start, Instant.now());
+        long cpuNanos = processCpuNanos() - cpuStart;
+
+        Map<String, Object> result = report(stats, elapsed, cpuNanos);
+        report.getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(report, result);
+        print(stats, elapsed);
+
+        long errors = stats.values().stream().mapToLong(s -> s.errors.get()).sum();
+        long requests = stats.values().stream().mapToLong(s -> s.latency.getTotalCount()).sum();
+        assertThat(requests).as("completed requests").isPositive();
+        assertThat((double) errors / requests).as("error rate").isLessThanOrEqualTo(maxErrorRate);
+    }
+
+    // Seeds the catalog in one batched transaction per thousand books
+    private void seed() {
+        SplittableRandom random = new SplittableRandom(seed);
+        seededIds = new long[books];
+        for (int loaded = 0; loaded < books; loaded += 1000) {
+            List<Book> chunk = new ArrayList<>();
+            for (int i = loaded; i < Math.min(books, loaded + 1000); i++) {
+                chunk.add(newBook(random));
+            }
+            List<Book> saved = bookService.createBooks(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                seededIds[loaded + i] = saved.get(i).getId();
+            }
+        }
+    }
+
+    // A shuffled, weighted cycle of operations, e.g. 60 gets for every 10 creates
+    private Operation[] schedule() {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+                operations.add(operation);
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = operations.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Operation swap = operations.get(i);
+            operations.set(i, operations.get(j));
+            operations.set(j, swap);
+        }
+        return operations.toArray(Operation[]::new);
+    }
+
+    // Sends requests at the target rate regardless of how fast responses come back
+    private void run(Operation[] schedule, Duration length, Map<Operation, Stats> stats) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = length.toNanos() / interval;
+        SplittableRandom random = new SplittableRandom(seed);
+        long start = System.nanoTime();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intendedStart = start + i * interval;
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = schedule[(int) (i % schedule.length)];
+                HttpRequest request = request(operation, random.split());
+                Stats operationStats = stats.get(operation);
+                if (request == null) {
+                    if (operationStats != null) {
+                        operationStats.skipped.incrementAndGet();
+                    }
+                    continue;
+                }
+                requests.submit(() -> send(operation, request, intendedStart, operationStats));
+            }
+        }
+    }
+
+    private void send(Operation operation, HttpRequest request, long intendedStart, Stats stats) {
+        long sent = System.nanoTime();
+        boolean ok;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            ok = response.statusCode() / 100 == 2;
+            if (ok && operation == Operation.CREATE) {
+                Matcher id = ID.matcher(response.body());
+                if (id.find()) {
+                    createdIds.add(Long.parseLong(id.group(1)));
+                }
+            }
+        } catch (Exception e) {
+            ok = false;
+        }
+        long done = System.nanoTime();
+        if (stats != null) {
+            stats.latency.recordValue(Math.min(done - intendedStart, MAX_LATENCY_NANOS));
+            stats.serviceTime.recordValue(Math.min(done - sent, MAX_LATENCY_NANOS));
+            if (!ok) {
+                stats.errors.incrementAndGet();
+            }
+        }
+    }
+
+    private HttpRequest request(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case GET -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + seededId(random))).GET().build();
+            case SEARCH -> HttpRequest.newBuilder(URI.create(baseUrl + "/search?"
+                    + (random.nextBoolean() ? "title=" + word(random) : "author=" + author(random))
+                    + "&size=20")).GET().build();
+            case CREATE -> json(HttpRequest.newBuilder(URI.create(baseUrl)), "POST", newBook(random));
+            case UPDATE -> {
+                long id = seededId(random);
+                Book book = newBook(random);
+                book.setId(id);
+                book.setIsbn(isbn(1_000_000_000L + id)); // stable per book, so updates never collide
+                yield json(HttpRequest.newBuilder(URI.create(baseUrl + "/" + id)), "PUT", book);
+            }
+            case DELETE -> {
+                Long id = createdIds.poll(); // only books created by this run, so reads keep finding theirs
+                yield id == null ? null : HttpRequest.newBuilder(URI.create(baseUrl + "/" + id)).DELETE().build();
+            }
+        };
+    }
+
+    private HttpRequest json(HttpRequest.Builder builder, String method, Book book) {
+        try {
+            return builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(book)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Book newBook(SplittableRandom random) {
+        return new Book(word(random) + " " + word(random), (random.nextBoolean() ? "Anna " : "John ") + author(random),
+                isbn(isbnSequence.getAndIncrement()), 1800 + random.nextInt(225), "A " + word(random) + " story.");
+    }
+
+    private long seededId(SplittableRandom random) {
+        return seededIds[random.nextInt(seededIds.length)];
+    }
+
+    private static String isbn(long n) {
+        return String.format("979%010d", n);
+    }
+
+    private static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String author(SplittableRandom random) {
+        return AUTHORS[random.nextInt(AUTHORS.length)];
+    }
+
+    // Name of the default report file; subclasses running another stack pick their own
+    protected String reportName() {
+        return "load-report.json";
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private Map<String, Object> report(Map<Operation, Stats> stats, Duration elapsed, long cpuNanos) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("books", books);
+        config.put("targetRate", rate);
+        config.put("warmup", warmup.toString());
+        config.put("duration", duration.toString());
+        config.put("mix", mix);
+        config.put("seed", seed);
+        config.put("maxErrorRate", maxErrorRate);
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        Histogram allLatency = new Histogram(MAX_LATENCY_NANOS, 3);
+        stats.forEach((operation, s) -> {
+            allLatency.add(s.latency);
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", s.latency.getTotalCount());
+            endpoint.put("errors", s.errors.get());
+            endpoint.put("skipped", s.skipped.get());
+            endpoint.put("throughputPerSecond", s.latency.getTotalCount() / (elapsed.toNanos() / 1e9));
+            endpoint.put("latencyMillis", percentiles(s.latency));
+            endpoint.put("serviceTimeMillis", percentiles(s.serviceTime));
+            endpoints.put(operation.name().toLowerCase(), endpoint);
+        });
+
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("requests", allLatency.getTotalCount());
+        total.put("throughputPerSecond", allLatency.getTotalCount() / (elapsed.toNanos() / 1e9));
+        total.put("latencyMillis", percentiles(allLatency));
+        total.put("processCpuSeconds", cpuNanos / 1e9);
+        total.put("requestsPerCpuSecond", allLatency.getTotalCount() / (cpuNanos / 1e9));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("config", config);
+        result.put("endpoints", endpoints);
+        result.put("total", total);
+        return result;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", millis(histogram.getValueAtPercentile(50)));
+        percentiles.put("p99", millis(histogram.getValueAtPercentile(99)));
+        percentiles.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        percentiles.put("max", millis(histogram.getMaxValue()));
+        return percentiles;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private void print(Map<Operation, Stats> stats, Duration elapsed) {
+        System.out.printf("%n%-7s %9s %7s %10s %10s %10s %10s %10s%n", "op", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        stats.forEach((operation, s) -> System.out.printf("%-7s %9d %7d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                operation.name().toLowerCase(), s.latency.getTotalCount(), s.errors.get(),
+                s.latency.getTotalCount() / (elapsed.toNanos() / 1e9),
+                millis(s.latency.getValueAtPercentile(50)), millis(s.latency.getValueAtPercentile(99)),
+                millis(s.latency.getValueAtPercentile(99.9)), millis(s.latency.getMaxValue())));
+        System.out.println("Report written to " + report.getAbsolutePath());
+    }
+}
@@ -0,0 +1,26 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The same load test against the reactive profile (functional routes on Netty, R2DBC against H2).
+ * Compare requestsPerCpuSecond in the two reports for throughput per core.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest='*LoadTestBenchmark' [-Dload.rate=500 ...]
+ * The report is written to target/load-report-reactive.json (or -Dload.report=...).
+ */
+@Tag("benchmark")
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive",
+                "spring.datasource.url=jdbc:h2:mem:load-test-reactive", "openai.api.key=load-test",
+                "logging.level.root=WARN"})
+class ReactiveLoadTestBenchmark extends LoadTestBenchmark {
+
+    @Override
+    protected String reportName() {
+        return "load-report-reactive.json";
+    }
+}
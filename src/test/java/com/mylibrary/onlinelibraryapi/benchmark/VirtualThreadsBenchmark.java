@@ -0,0 +1,156 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import com.mylibrary.onlinelibraryapi.OnlineLibraryApiApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the app once with platform threads and once with virtual threads, floods the
+ * /books/{id}/ai-insights endpoint (backed by a slow stub standing in for OpenAI) with one call per book
+ * and meanwhile measures plain GET /books/{id} latency. Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class VirtualThreadsBenchmark {
+    private static final int SLOW_REQUESTS = 400; // twice Tomcat's default 200 platform threads
+    private static final Duration UPSTREAM_DELAY = Duration.ofSeconds(2);
+    private static final int CRUD_REQUESTS = 100;
+
+    private static final AtomicInteger upstreamInFlight = new AtomicInteger();
+    private static final AtomicInteger upstreamPeak = new AtomicInteger();
+    private static HttpServer upstream;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private record Result(String mode, int upstreamPeak, long crudP50Millis, long crudMaxMillis, long slowTotalMillis) {
+    }
+
+    @BeforeAll
+    static void startUpstream() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/", exchange -> {
+            upstreamPeak.accumulateAndGet(upstreamInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(UPSTREAM_DELAY);
+                byte[] body = "{\"choices\":[{\"message\":{\"content\":\"A tagline.\"}}]}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                upstreamInFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        upstream.start();
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void compareThreadModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n%-9s %14s %14s %14s %16s%n", "mode", "upstream peak", "CRUD p50 ms", "CRUD max ms", "slow total ms");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-9s %14d %14d %14d %16d%n", result.mode(), result.upstreamPeak(),
+                    result.crudP50Millis(), result.crudMaxMillis(), result.slowTotalMillis());
+        }
+
+        // The insights call no longer holds a request thread, so every slow call is in flight at once in both modes
+        assertThat(platform.upstreamPeak()).isEqualTo(SLOW_REQUESTS);
+        assertThat(virtual.upstreamPeak()).isEqualTo(SLOW_REQUESTS);
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        upstreamPeak.set(0);
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OnlineLibraryApiApplication.class)
+                .profiles("test")
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:virtual-threads-" + virtualThreads,
+                        "--openai.api.key=benchmark",
+                        "--openai.api.url=http://localhost:" + upstream.getAddress().getPort() + "/",
+                        "--openai.client.max-connections=" + SLOW_REQUESTS,
+                        "--openai.insights.max-concurrent=" + SLOW_REQUESTS,
+                        "--library.limits.enabled=false", // measures thread use, so nothing may be shed
+                        "--logging.level.root=WARN")) {
+            String baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port") + "/books";
+            // Distinct books, otherwise concurrent insight calls would be coalesced into one
+            long[] bookIds = new long[SLOW_REQUESTS];
+            for (int i = 0; i < SLOW_REQUESTS; i++) {
+                bookIds[i] = createBook(baseUrl, i);
+            }
+            long bookId = bookIds[0];
+
+            long slowStart = System.nanoTime();
+            List<CompletableFuture<HttpResponse<Void>>> slowCalls = new ArrayList<>();
+            for (long id : bookIds) {
+                slowCalls.add(client.sendAsync(get(baseUrl + "/" + id + "/ai-insights"),
+                        HttpResponse.BodyHandlers.discarding()));
+            }
+            Thread.sleep(UPSTREAM_DELAY.dividedBy(4)); // let the slow calls occupy the server
+
+            long[] latencies = new long[CRUD_REQUESTS];
+            for (int i = 0; i < CRUD_REQUESTS; i++) {
+                long start = System.nanoTime();
+                client.send(get(baseUrl + "/" + bookId), HttpResponse.BodyHandlers.discarding());
+                latencies[i] = (System.nanoTime() - start) / 1_000_000;
+            }
+            CompletableFuture.allOf(slowCalls.toArray(CompletableFuture[]::new)).join();
+            long slowTotal = (System.nanoTime() - slowStart) / 1_000_000;
+
+            Arrays.sort(latencies);
+            return new Result(virtualThreads ? "virtual" : "platform", upstreamPeak.get(),
+                    latencies[latencies.length / 2], latencies[latencies.length - 1], slowTotal);
+        }
+    }
+
+    private long createBook(String baseUrl, int n) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {"title":"The Hobbit, vol. %d","author":"J. R. R. Tolkien","isbn":"978%010d",
+                         "publicationYear":1937,"description":"A fantasy novel."}
+                        """.formatted(n, n)))
+                .build();
+        String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        Matcher id = Pattern.compile("\"id\":(\\d+)").matcher(body);
+        assertThat(id.find()).isTrue();
+        return Long.parseLong(id.group(1));
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.mylibrary.onlinelibraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.OnlineLibraryApiApplication;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the prod profile once per setting, each against a fresh in-memory H2 built by the Flyway migrations,
+ * and measures write throughput through BookService: bulk inserts in import-sized chunks, then concurrent
+ * writers creating and updating single books.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=WriteThroughputBenchmark [-Dwrite.books=50000 -Dwrite.threads=16 ...]
+ * The report is written to target/write-report.json (or -Dwrite.report=...).
+ */
+@Tag("benchmark")
+class WriteThroughputBenchmark {
+    private static final String BATCH_SIZE = "--spring.jpa.properties.hibernate.jdbc.batch_size=";
+    private static final String POOL_SIZE = "--spring.datasource.hikari.maximum-pool-size=";
+    private static final String MIN_IDLE = "--spring.datasource.hikari.minimum-idle=";
+    private static final String H2_OPTIONS = ";QUERY_CACHE_SIZE=64"; // as in application-prod.properties
+
+    // Each setting is the prod profile plus these overrides
+    private static final List<Setting> SETTINGS = List.of(
+            new Setting("prod", List.of()),
+            new Setting("no batching", List.of(BATCH_SIZE + 1,
+                    "--spring.jpa.properties.hibernate.order_inserts=false",
+                    "--spring.jpa.properties.hibernate.order_updates=false")),
+            new Setting("batch 20", List.of(BATCH_SIZE + 20)),
+            new Setting("batch 500", List.of(BATCH_SIZE + 500)),
+            new Setting("pool 4", List.of(POOL_SIZE + 4, MIN_IDLE + 4)),
+            new Setting("pool 64", List.of(POOL_SIZE + 64, MIN_IDLE + 64)),
+            new Setting("no query cache", ";QUERY_CACHE_SIZE=0", List.of()),
+            new Setting("no plan cache", List.of("--spring.jpa.properties.hibernate.query.plan_cache_max_size=1")),
+            new Setting("L2 cache", List.of("--spring.jpa.properties.hibernate.cache.use_second_level_cache=true")));
+
+    private final int books = Integer.getInteger("write.books", 20_000);
+    private final int chunkSize = Integer.getInteger("write.chunk-size", 500);
+    private final int threads = Integer.getInteger("write.threads", 8);
+    private final Duration duration = Duration.parse(System.getProperty("write.duration", "PT5S"));
+    private final File report = new File(System.getProperty("write.report", "target/write-report.json"));
+
+    private final AtomicLong isbnSequence = new AtomicLong();
+
+    private record Setting(String name, String h2Options, List<String> overrides) {
+        Setting(String name, List<String> overrides) {
+            this(name, H2_OPTIONS, overrides);
+        }
+    }
+
+    private record Result(String setting, double bulkBooksPerSecond, double writesPerSecond, long writeErrors) {
+    }
+
+    @Test
+    void compareSettings() throws Exception {
+        run(SETTINGS.getFirst(), SETTINGS.size()); // warm-up, otherwise the first setting pays for the JIT
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < SETTINGS.size(); i++) {
+            results.add(run(SETTINGS.get(i), i));
+        }
+
+        System.out.printf("%n%-16s %16s %16s %8s%n", "setting", "bulk books/s", "writes/s", "errors");
+        results.forEach(result -> System.out.printf("%-16s %16.0f %16.0f %8d%n", result.setting(),
+                result.bulkBooksPerSecond(), result.writesPerSecond(), result.writeErrors()));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("books", books);
+        config.put("chunkSize", chunkSize);
+        config.put("threads", threads);
+        config.put("duration", duration.toString());
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", Instant.now().toString());
+        json.put("config", config);
+        json.put("results", results);
+        report.getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report, json);
+        System.out.println("Report written to " + report.getAbsolutePath());
+
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.bulkBooksPerSecond()).isPositive();
+            assertThat(result.writesPerSecond()).isPositive();
+        });
+    }
+
+    private Result run(Setting setting, int n) throws Exception {
+        String[] args = Stream.concat(Stream.of(
+                        "--spring.main.web-application-type=none",
+                        "--spring.datasource.url=jdbc:h2:mem:write-throughput-" + n + setting.h2Options(),
+                        "--openai.api.key=benchmark",
+                        "--openai.insights.precompute.enabled=false",
+                        "--logging.level.root=WARN"), setting.overrides().stream())
+                .toArray(String[]::new);
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OnlineLibraryApiApplication.class)
+                .profiles("prod")
+                .run(args)) {
+            BookService bookService = app.getBean(BookService.class);
+            double bulkBooksPerSecond = bulkInsert(bookService);
+            double[] writes = concurrentWrites(bookService);
+            return new Result(setting.name(), bulkBooksPerSecond, writes[0], (long) writes[1]);
+        }
+    }
+
+    // Books per second through createBooks, one transaction per chunk as the importer does
+    private double bulkInsert(BookService bookService) {
+        long start = System.nanoTime();
+        for (int loaded = 0; loaded < books; loaded += chunkSize) {
+            List<Book> chunk = new ArrayList<>(chunkSize);
+            for (int i = 0; i < Math.min(chunkSize, books - loaded); i++) {
+                chunk.add(newBook());
+            }
+            bookService.createBooks(chunk);
+        }
+        return books / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // {writes per second, errors}: each writer creates a book, then updates it, until the time is up
+    private double[] concurrentWrites(BookService bookService) throws InterruptedException {
+        AtomicLong writes = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            try {
+                                Book book = bookService.createBook(newBook());
+                                book.setDescription("Revised.");
+                                bookService.updateBook(book.getId(), book, null);
+                                writes.addAndGet(2);
+                            } catch (RuntimeException e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        return new double[]{writes.get() / ((System.nanoTime() - start) / 1e9), errors.get()};
+    }
+
+    private Book newBook() {
+        long n = isbnSequence.incrementAndGet();
+        return new Book("Benchmark book " + n, "Author " + (n % 500), "978%010d".formatted(n), 1950 + (int) (n % 70),
+                "A book written for the write benchmark.");
+    }
+}
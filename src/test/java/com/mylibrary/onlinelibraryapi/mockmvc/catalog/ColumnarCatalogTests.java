@@ -0,0 +1,301 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.catalog;
+
+import com.mylibrary.onlinelibraryapi.catalog.CatalogSnapshot;
+import com.mylibrary.onlinelibraryapi.catalog.CatalogSnapshots;
+import com.mylibrary.onlinelibraryapi.catalog.ColumnarCatalog;
+import com.mylibrary.onlinelibraryapi.metrics.QueryCounters;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import com.mylibrary.onlinelibraryapi.service.BookChangeEvent;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// With the columnar catalog enabled, whole-book reads are answered from memory and follow every write
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"library.catalog.columnar.enabled=true", "library.bulk.chunk-size=500",
+        "library.catalog.snapshot.enabled=true", "library.catalog.snapshot.path=target/catalog-snapshots/${random.uuid}",
+        "openai.api.key=columnar-catalog"})
+@Transactional
+class ColumnarCatalogTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ColumnarCatalog columnarCatalog;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path snapshotDirectory;
+
+    @Test
+    void readsAreServedWithoutQueries() {
+        Book hobbit = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937,
+                "A fantasy novel."));
+        Book dune = bookService.createBook(new Book("Dune", "Frank Herbert", "9780441172719", 1965, null));
+
+        QueryCounters.Counts counts = QueryCounters.start();
+        try {
+            assertThat(bookService.getBookById(hobbit.getId())).hasValueSatisfying(book -> {
+                assertThat(book.getTitle()).isEqualTo("The Hobbit");
+                assertThat(book.getAuthor()).isEqualTo("J. R. R. Tolkien");
+                assertThat(book.getIsbn()).isEqualTo("9780261103283");
+                assertThat(book.getPublicationYear()).isEqualTo(1937);
+                assertThat(book.getDescription()).isEqualTo("A fantasy novel.");
+                assertThat(book.getVersion()).isZero();
+            });
+            assertThat(bookService.getBooksAfter(hobbit.getId() - 1, 2)).extracting(Book::getTitle)
+                    .containsExactly("The Hobbit", "Dune");
+            assertThat(bookService.searchBooks(SearchMode.CONTAINS, "dune", null, null, 0, 10))
+                    .singleElement()
+                    .satisfies(book -> assertThat(book.getDescription()).isNull());
+            assertThat(bookService.getCachedVersion(dune.getId())).contains(0L);
+            assertThat(counts.getStatements()).isZero();
+        } finally {
+            QueryCounters.stop();
+        }
+    }
+
+    @Test
+    void updatesAndDeletesArePatchedIn() {
+        Book saved = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+
+        bookService.updateBook(saved.getId(), new Book("The Hobbit, or There and Back Again", "J. R. R. Tolkien",
+                "9780261103283", 1937, "Revised."), null);
+        assertThat(bookService.getBookById(saved.getId())).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("The Hobbit, or There and Back Again");
+            assertThat(book.getDescription()).isEqualTo("Revised.");
+            assertThat(book.getVersion()).isEqualTo(1L); // bumped by the UPDATE, though the caller did not know it
+        });
+
+        bookService.updateBook(saved.getId(), new Book("The Hobbit", "Tolkien", "9780261103283", 1938, null), 1L);
+        assertThat(bookService.getBookById(saved.getId())).hasValueSatisfying(book -> {
+            assertThat(book.getAuthor()).isEqualTo("Tolkien");
+            assertThat(book.getPublicationYear()).isEqualTo(1938);
+            assertThat(book.getVersion()).isEqualTo(2L);
+        });
+
+        bookService.deleteBook(saved.getId());
+        assertThat(bookService.getBookById(saved.getId())).isEmpty();
+        assertThat(bookService.getBooksAfter(saved.getId() - 1, 10)).isEmpty();
+    }
+
+    @Test
+    void uncommittedWritesAreOnlySeenByTheirTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long id = transaction.execute(status -> {
+            Book saved = bookService.createBook(new Book("Dune", "Frank Herbert", "9780441172719", 1965, null));
+            assertThat(bookService.getBookById(saved.getId())).isPresent();
+            // A reader outside the transaction, on another thread, only sees committed books
+            assertThat(CompletableFuture.supplyAsync(() -> columnarCatalog.get(saved.getId())).join()).isEmpty();
+            status.setRollbackOnly();
+            return saved.getId();
+        });
+
+        assertThat(bookService.getBookById(id)).isEmpty();
+    }
+
+    // Writes only reach the columns on commit, so this test feeds a catalog of its own outside a transaction
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void deletedRowsAreCompactedAway() {
+        ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        for (long id = 1; id <= 3000; id++) {
+            catalog.add(book(id, "Book " + id, "Author " + id % 10, "978%010d".formatted(id), 1950, null));
+        }
+
+        catalog.onBookChange(BookChangeEvent.deleted(LongStream.rangeClosed(1, 2500).boxed().toList()));
+
+        assertThat(catalog.stats().tombstones()).isLessThan(1024);
+        assertThat(catalog.get(2500)).isEmpty();
+        assertThat(catalog.get(2501)).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("Book 2501");
+            assertThat(book.getAuthor()).isEqualTo("Author 1");
+        });
+        assertThat(catalog.booksAfter(0L, 1000)).extracting(Book::getId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(2501, 3000).boxed().toList());
+    }
+
+    @Test
+    void snapshotsRoundTrip() throws IOException {
+        ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        catalog.add(book(1L, "Le Petit Prince", "Antoine de Saint-Exupéry", "9782070612758", 1943, "Un conte ✈"));
+        catalog.add(book(2L, "Dune", "Frank Herbert", "9780441172719", 1965, null));
+        catalog.add(book(3L, "Dune Messiah", "Frank Herbert", "9780441172696", 1969, "The sequel."));
+        catalog.add(book(4L, "百年孤独", "Gabriel García Márquez", "9787544253994", 1967, ""));
+        catalog.replay(List.of(new BookChange(1, BookChangeEvent.Type.DELETED, 3L, null)));
+        Path path = snapshotDirectory.resolve("catalog.snapshot");
+
+        CatalogSnapshot.Header written = catalog.writeSnapshot(path, 42);
+        ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        CatalogSnapshot.Header header = restored.restoreSnapshot(path);
+
+        assertThat(header).isEqualTo(written);
+        assertThat(CatalogSnapshot.readHeader(path)).isEqualTo(written);
+        assertThat(header.sequence()).isEqualTo(42);
+        assertThat(header.books()).isEqualTo(3);
+        assertThat(all(restored)).usingRecursiveFieldByFieldElementComparator().isEqualTo(all(catalog));
+        assertThat(restored.stats().tombstones()).isZero();
+
+        // The restored columns and arenas are sized exactly, so the next writes have to grow them
+        restored.add(book(5L, "Emma", "Jane Austen", "9780141439587", 1815, "A novel."));
+        restored.add(book(0L, "Persuasion", "Jane Austen", "9780141439686", 1817, null));
+        assertThat(all(restored)).extracting(Book::getTitle)
+                .containsExactly("Persuasion", "Le Petit Prince", "Dune", "百年孤独", "Emma");
+        assertThat(restored.get(1L)).hasValueSatisfying(book ->
+                assertThat(book.getAuthor()).isEqualTo("Antoine de Saint-Exupéry"));
+
+        ColumnarCatalog empty = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        empty.writeSnapshot(path, 0);
+        assertThat(restored.restoreSnapshot(path).books()).isZero();
+        assertThat(restored.size()).isZero();
+    }
+
+    @Test
+    void textSpillsOverIntoFurtherArenaChunks() throws IOException {
+        // 20,000 descriptions of 1,000 bytes fill the first 16 MB chunk of the description arena and start a second
+        ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        for (long id = 1; id <= 20_000; id++) {
+            String description = String.format("%-1000s", "Description of book " + id);
+            catalog.add(book(id, "Book " + id, "Author " + id % 100, String.format("978%010d", id), 2000,
+                    description));
+        }
+        assertThat(catalog.stats().textBytes()).isGreaterThan(20_000_000L);
+        assertThat(catalog.get(16_778L)).hasValueSatisfying(book ->
+                assertThat(book.getDescription()).startsWith("Description of book 16778 "));
+
+        Path path = snapshotDirectory.resolve("catalog.snapshot");
+        catalog.writeSnapshot(path, 1);
+        ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        restored.restoreSnapshot(path);
+        assertThat(all(restored)).usingRecursiveFieldByFieldElementComparator().isEqualTo(all(catalog));
+    }
+
+    @Test
+    void damagedSnapshotsAreRejected() throws IOException {
+        ColumnarCatalog catalog = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        catalog.add(book(1L, "Dune", "Frank Herbert", "9780441172719", 1965, "A desert planet."));
+        Path path = snapshotDirectory.resolve("catalog.snapshot");
+        catalog.writeSnapshot(path, 7);
+        byte[] original = Files.readAllBytes(path);
+        ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+
+        byte[] flipped = original.clone();
+        flipped[original.length - 10] ^= 1;
+        Files.write(path, flipped);
+        assertThatThrownBy(() -> restored.restoreSnapshot(path)).isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+
+        Files.write(path, Arrays.copyOf(original, original.length - 1));
+        assertThatThrownBy(() -> restored.restoreSnapshot(path)).isInstanceOf(IOException.class);
+
+        byte[] newerFormat = original.clone();
+        ByteBuffer.wrap(newerFormat).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 99);
+        Files.write(path, newerFormat);
+        assertThatThrownBy(() -> restored.restoreSnapshot(path)).isInstanceOf(IOException.class)
+                .hasMessageContaining("version 99");
+
+        Files.writeString(path, "not a snapshot at all, just some text that is long enough to hold a header");
+        assertThatThrownBy(() -> restored.restoreSnapshot(path)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a catalog snapshot");
+        assertThat(restored.size()).isZero();
+    }
+
+    // Snapshots hold committed books only, so this test commits its writes (and deletes the books again)
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void restoredSnapshotsCatchUpWithTheChangeLog() throws IOException {
+        Book hobbit = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        Book dune = bookService.createBook(new Book("Dune", "Frank Herbert", "9780441172719", 1965, null));
+        Book emma = null;
+        try {
+            assertThat(catalogSnapshots.writeSnapshot().books()).isEqualTo(columnarCatalog.size());
+
+            bookService.updateBook(hobbit.getId(), new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937,
+                    "There and back again."), null);
+            bookService.deleteBook(dune.getId());
+            emma = bookService.createBook(new Book("Emma", "Jane Austen", "9780141439587", 1815, null));
+
+            ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+            assertThat(catalogSnapshots.restore(restored)).isTrue();
+            assertThat(all(restored)).usingRecursiveFieldByFieldElementComparator().isEqualTo(all(columnarCatalog));
+            assertThat(restored.get(hobbit.getId())).hasValueSatisfying(book -> {
+                assertThat(book.getDescription()).isEqualTo("There and back again.");
+                assertThat(book.getVersion()).isEqualTo(1L);
+            });
+            assertThat(restored.get(dune.getId())).isEmpty();
+        } finally {
+            bookService.deleteBook(hobbit.getId());
+            bookService.deleteBook(dune.getId());
+            if (emma != null) {
+                bookService.deleteBook(emma.getId());
+            }
+        }
+    }
+
+    @Test
+    void snapshotsLeaveOutUncommittedWrites() throws IOException {
+        Path path = snapshotDirectory.resolve("catalog.snapshot");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long id = transaction.execute(status -> {
+            Book dune = bookService.createBook(new Book("Dune", "Frank Herbert", "9780441172719", 1965, null));
+            try {
+                columnarCatalog.writeSnapshot(path, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            status.setRollbackOnly();
+            return dune.getId();
+        });
+
+        ColumnarCatalog restored = new ColumnarCatalog(true, new SimpleMeterRegistry());
+        assertThat(restored.restoreSnapshot(path).books()).isEqualTo(columnarCatalog.size());
+        assertThat(restored.get(id)).isEmpty();
+    }
+
+    private static Book book(long id, String title, String author, String isbn, int year, String description) {
+        Book book = new Book(title, author, isbn, year, description);
+        book.setId(id);
+        book.setVersion(0L);
+        return book;
+    }
+
+    private static List<Book> all(ColumnarCatalog catalog) {
+        List<Book> books = new ArrayList<>();
+        catalog.forEach(books::add);
+        return books;
+    }
+}
@@ -0,0 +1,41 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.config;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The prod profile builds the schema from the Flyway migrations; Hibernate validates the entities against it
+@ActiveProfiles({"test", "prod"})
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:prod-profile;QUERY_CACHE_SIZE=64",
+        "spring.jpa.hibernate.ddl-auto=validate", "openai.api.key=prod-profile",
+        "openai.insights.precompute.enabled=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true"})
+class ProdProfileTests {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void migrationsMatchEntities() {
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("3");
+
+        Book saved = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937,
+                "A fantasy novel."));
+        assertThat(bookService.getBookById(saved.getId())).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("The Hobbit");
+            assertThat(book.getVersion()).isZero();
+        });
+        assertThat(bookService.updateBook(saved.getId(), new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283",
+                1937, "Updated."), 0L)).isPresent();
+        assertThat(bookService.deleteBook(saved.getId())).isTrue();
+    }
+}
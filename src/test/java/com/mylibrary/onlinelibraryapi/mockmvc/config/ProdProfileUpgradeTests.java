@@ -0,0 +1,85 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.config;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookChange;
+import com.mylibrary.onlinelibraryapi.service.BookChangeLog;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The prod profile upgrades a database created by ddl-auto=update before the migrations: IDENTITY ids,
+// no version or search columns, change log numbers from a counter row
+@ActiveProfiles({"test", "prod"})
+@SpringBootTest(properties = {"spring.jpa.hibernate.ddl-auto=validate", "openai.api.key=prod-profile-upgrade",
+        "openai.insights.precompute.enabled=false"})
+class ProdProfileUpgradeTests {
+    private static final String URL = "jdbc:h2:mem:prod-profile-upgrade;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookChangeLog bookChangeLog;
+
+    @DynamicPropertySource
+    static void legacyDatabase(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE books (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " author VARCHAR(255) NOT NULL, description CLOB, isbn VARCHAR(255) NOT NULL UNIQUE,"
+                    + " publication_year INTEGER NOT NULL, title VARCHAR(255) NOT NULL)");
+            statement.execute("INSERT INTO books (author, isbn, publication_year, title) VALUES"
+                    + " ('J. R. R. Tolkien', '9780261103283', 1937, 'The Hobbit'),"
+                    + " ('Frank Herbert', '9780441172719', 1965, 'Dune')");
+            statement.execute("CREATE TABLE book_change_log (sequence BIGINT NOT NULL PRIMARY KEY,"
+                    + " type ENUM ('CREATED', 'DELETED', 'UPDATED') NOT NULL, book_id BIGINT NOT NULL,"
+                    + " changed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL)");
+            statement.execute("INSERT INTO book_change_log VALUES (6, 'CREATED', 2, CURRENT_TIMESTAMP)");
+            statement.execute("CREATE TABLE change_log_counter (id INTEGER NOT NULL PRIMARY KEY,"
+                    + " last_sequence BIGINT NOT NULL)");
+            statement.execute("INSERT INTO change_log_counter VALUES (1, 7)");
+        }
+        registry.add("spring.datasource.url", () -> URL);
+    }
+
+    @Test
+    void legacySchemaIsUpgraded() {
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("3");
+        assertThat(flyway.info().applied()).extracting(info -> info.getVersion().getVersion())
+                .containsExactly("0", "1", "2", "3");
+
+        // Existing rows keep their ids, get a version and are searchable once their search columns are filled in
+        Book dune = bookService.getBookById(2L).orElseThrow();
+        assertThat(dune.getTitle()).isEqualTo("Dune");
+        assertThat(dune.getVersion()).isNotNull();
+        assertThat(bookService.searchBooks(SearchMode.PREFIX, "dun", null, null, 0, 10))
+                .extracting(Book::getIsbn).containsExactly("9780441172719");
+
+        // New ids come from the sequence, above the existing ones, and writes reach the change log after every
+        // number the counter handed out
+        long sequenceBefore = bookChangeLog.lastSequence();
+        assertThat(sequenceBefore).isGreaterThanOrEqualTo(7);
+        Book saved = bookService.createBook(new Book("Emma", "Jane Austen", "9780141439587", 1815, null));
+        assertThat(saved.getId()).isGreaterThan(2L);
+        assertThat(bookService.updateBook(2L, new Book("Dune", "Frank Herbert", "9780441172719", 1965,
+                "Updated."), dune.getVersion())).isPresent();
+        assertThat(bookChangeLog.changesSince(sequenceBefore, 10)).extracting(BookChange::id)
+                .containsExactly(saved.getId(), 2L);
+    }
+}
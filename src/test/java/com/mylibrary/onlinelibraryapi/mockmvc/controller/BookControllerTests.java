@@ -1,9 +1,16 @@
 package com.mylibrary.onlinelibraryapi.mockmvc.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mylibrary.onlinelibraryapi.cache.BookCache;
 import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.repository.BookChangeLogRepository;
+import com.mylibrary.onlinelibraryapi.search.BookFacets;
 import com.mylibrary.onlinelibraryapi.service.BookService;
 import io.github.cdimascio.dotenv.Dotenv;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,14 +21,27 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,9 +55,27 @@ public class BookControllerTests {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookCache bookCache;
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BookChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private BookFacets bookFacets;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private ObjectMapper objectMapper; // Used to convert Java objects to JSON
 
@@ -155,6 +193,23 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.isbn").value("A book with this ISBN already exists"));
     }
 
+    @Test
+    void testCreateBookDuplicateOfCachedBookRunsNoStatements() throws Exception {
+        entityManager.flush(); // write the book saved in setUp before counting
+        bookService.getBookById(savedBook.getId()); // caches it, ISBN included
+        DistributionSummary statements = requestSummary("library.request.db.statements", "POST", "/books", "400");
+        double totalBefore = statements.totalAmount();
+
+        Book testBook = new Book("The Hobbit", "J. R. R. Tolkien", savedBook.getIsbn(), 1937, null);
+        mockMvc.perform(post("/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testBook)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.isbn").value("A book with this ISBN already exists"));
+
+        assertThat(statements.totalAmount()).isEqualTo(totalBefore);
+    }
+
     @Test
     void testCreateBookMissingPublicationYear() throws Exception {
         Book testBook = new Book("The Lord of the Rings: The Return of the King", "J. R. R. Tolkien",
@@ -201,6 +256,78 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.description").value("Description cannot exceed 1000 characters"));
     }
 
+    @Test
+    void testBulkImportNdjson() throws Exception {
+        String body = String.join("\n",
+                objectMapper.writeValueAsString(new Book("The Silmarillion", "J. R. R. Tolkien",
+                        "9780261103284", 1977, "A collection of myths and stories.")),
+                objectMapper.writeValueAsString(new Book("", "J. R. R. Tolkien",
+                        "9780261103285", 1977, "Missing title.")),
+                objectMapper.writeValueAsString(new Book("The Hobbit again", "J. R. R. Tolkien",
+                        savedBook.getIsbn(), 1937, "Duplicate of an existing book.")),
+                "",
+                "{not json",
+                objectMapper.writeValueAsString(new Book("Unfinished Tales", "J. R. R. Tolkien",
+                        "9780261103286", 1980, null)));
+
+        String report = mockMvc.perform(post("/books/bulk")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<Map<String, Object>> lines = readNdjson(report);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0)).containsEntry("row", 2).containsEntry("errors", Map.of("title", "Title cannot be empty"));
+        assertThat(lines.get(1)).containsEntry("row", 3)
+                .containsEntry("errors", Map.of("isbn", "A book with this ISBN already exists"));
+        assertThat(lines.get(2)).containsEntry("row", 5).containsEntry("errors", Map.of("row", "Malformed JSON"));
+        assertThat(lines.get(3)).containsEntry("imported", 2).containsEntry("rejected", 3);
+
+        assertThat(bookService.doesBookExistByIsbn("9780261103284")).isTrue();
+        assertThat(bookService.doesBookExistByIsbn("9780261103286")).isTrue();
+        mockMvc.perform(get("/books/search").param("title", "unfinished"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testBulkImportCsv() throws Exception {
+        String body = """
+                isbn,title,author,publicationYear,description
+                9780261103284,The Silmarillion,J. R. R. Tolkien,1977,"Myths, legends and ""stories""."
+                9780261103284,Duplicate in the same file,J. R. R. Tolkien,1977,
+                9780261103286,Unfinished Tales,J. R. R. Tolkien,not-a-year,
+                """;
+
+        String report = mockMvc.perform(post("/books/bulk")
+                        .contentType("text/csv")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<Map<String, Object>> lines = readNdjson(report);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).containsEntry("row", 2)
+                .containsEntry("errors", Map.of("isbn", "A book with this ISBN already exists"));
+        assertThat(lines.get(1)).containsEntry("row", 3)
+                .containsEntry("errors", Map.of("publicationYear", "Publication year must be a number"));
+        assertThat(lines.get(2)).containsEntry("imported", 1).containsEntry("rejected", 2);
+
+        mockMvc.perform(get("/books/search").param("title", "silmarillion"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].description").value("Myths, legends and \"stories\"."));
+    }
+
+    private List<Map<String, Object>> readNdjson(String body) throws Exception {
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(objectMapper.readValue(line, new TypeReference<>() {}));
+            }
+        }
+        return lines;
+    }
+
     @Test
     void testGetAllBooksHappyDay() throws Exception {
         mockMvc.perform(get("/books")
@@ -214,6 +341,96 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$[0].publicationYear").value(savedBook.getPublicationYear()));
     }
 
+    @Test
+    void testGetAllBooksPaginated() throws Exception {
+        Book secondBook = bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        String nextToken = mockMvc.perform(get("/books")
+                        .param("limit", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(savedBook.getId()))
+                .andExpect(header().exists("X-Next-Page-Token"))
+                .andReturn().getResponse().getHeader("X-Next-Page-Token");
+
+        mockMvc.perform(get("/books")
+                        .param("limit", "1")
+                        .param("after", nextToken)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(secondBook.getId()))
+                .andExpect(header().doesNotExist("X-Next-Page-Token"));
+    }
+
+    @Test
+    void testGetAllBooksSparseFields() throws Exception {
+        mockMvc.perform(get("/books")
+                        .param("fields", "title,author")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(savedBook.getId()))
+                .andExpect(jsonPath("$[0].title").value(savedBook.getTitle()))
+                .andExpect(jsonPath("$[0].author").value(savedBook.getAuthor()))
+                .andExpect(jsonPath("$[0].isbn").doesNotExist())
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+
+    @Test
+    void testGetAllBooksSparseFieldsPaginated() throws Exception {
+        Book secondBook = bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        // Query string rather than params so the next-page link is built from it
+        String nextToken = mockMvc.perform(get("/books?limit=1&fields=isbn")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].isbn").value(savedBook.getIsbn()))
+                .andExpect(header().string("Link", containsString("fields=isbn")))
+                .andReturn().getResponse().getHeader("X-Next-Page-Token");
+
+        mockMvc.perform(get("/books")
+                        .param("limit", "1")
+                        .param("after", nextToken)
+                        .param("fields", "isbn")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(secondBook.getId()))
+                .andExpect(jsonPath("$[0].title").doesNotExist())
+                .andExpect(header().doesNotExist("X-Next-Page-Token"));
+    }
+
+    @Test
+    void testGetAllBooksUnknownField() throws Exception {
+        mockMvc.perform(get("/books")
+                        .param("fields", "title,price")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.fields").value("Unknown field: price"));
+    }
+
+    @Test
+    void testGetAllBooksInvalidToken() throws Exception {
+        mockMvc.perform(get("/books")
+                        .param("after", "not-a-token")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.after").value("Invalid continuation token"));
+    }
+
+    @Test
+    void testGetAllBooksInvalidLimit() throws Exception {
+        mockMvc.perform(get("/books")
+                        .param("limit", "0")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.limit").value("Limit must be between 1 and 1000"));
+    }
+
     @Test
     void testGetBookByIdHappyDay() throws Exception {
         mockMvc.perform(get("/books/{id}", savedBook.getId())
@@ -225,6 +442,82 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.publicationYear").value(savedBook.getPublicationYear()));
     }
 
+    @Test
+    void testGetBookByIdServedFromCache() throws Exception {
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk());
+        long hitsBefore = bookCache.stats().hitCount();
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value(savedBook.getTitle()));
+
+        assertThat(bookCache.stats().hitCount()).isEqualTo(hitsBefore + 1);
+        // The same stats are published as Micrometer cache meters
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "books", "result", "hit").functionCounter().count())
+                .isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void testGetBookByIdAfterUpdate() throws Exception {
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(jsonPath("$.title").value("The Hobbit"));
+
+        Book updatedBook = new Book(savedBook.getId(), "The Hobbit (Updated)",
+                "J. R. R. Tolkien", "9780261103284", 1937, "Updated description.");
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("The Hobbit (Updated)"))
+                .andExpect(jsonPath("$.isbn").value("9780261103284"));
+        assertThat(bookService.doesBookExistByIsbn("9780261103284")).isTrue();
+    }
+
+    @Test
+    void testGetBookByIdServedFromJsonCache() throws Exception {
+        String expected = objectMapper.writeValueAsString(bookService.getBookById(savedBook.getId()).orElseThrow());
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(content().json(expected, JsonCompareMode.STRICT));
+        double hitsBefore = meterRegistry.get("cache.gets").tags("cache", "book-json", "result", "hit")
+                .functionCounter().count();
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("Content-Length", String.valueOf(expected.length())))
+                .andExpect(content().string(expected));
+
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "book-json", "result", "hit")
+                .functionCounter().count()).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void testCachedJsonFollowsBulkUpdates() throws Exception {
+        mockMvc.perform(get("/books/search").param("title", "hobbit"))
+                .andExpect(jsonPath("$[0].publicationYear").value(1937));
+
+        mockMvc.perform(patch("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {"where": {"ids": [%d]}, "set": {"publicationYear": 1938}}
+                                """, savedBook.getId())))
+                .andExpect(status().isOk());
+
+        String expected = objectMapper.writeValueAsString(
+                List.of(bookService.getBookById(savedBook.getId()).orElseThrow()));
+        mockMvc.perform(get("/books/search").param("title", "hobbit"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(expected))
+                .andExpect(jsonPath("$[0].publicationYear").value(1938));
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(jsonPath("$.publicationYear").value(1938))
+                .andExpect(jsonPath("$.version").value(1));
+    }
+
     @Test
     void testGetBookByIdNotFound() throws Exception {
         mockMvc.perform(get("/books/{id}", 999L)
@@ -233,6 +526,33 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.error").value("Book with id 999 not found"));
     }
 
+    @Test
+    void testRequestMetricsCountStatements() throws Exception {
+        DistributionSummary statements = requestSummary("library.request.db.statements", "GET", "/books/{id}", "404");
+        long countBefore = statements.count();
+        double totalBefore = statements.totalAmount();
+
+        mockMvc.perform(get("/books/{id}", 999L))
+                .andExpect(status().isNotFound());
+
+        // One primary key lookup, nothing else
+        assertThat(statements.count()).isEqualTo(countBefore + 1);
+        assertThat(statements.totalAmount()).isEqualTo(totalBefore + 1);
+    }
+
+    @Test
+    void testRequestMetricsRecordResponseBytes() throws Exception {
+        DistributionSummary bytes = requestSummary("library.request.response.bytes", "GET", "/books/{id}", "200");
+        double totalBefore = bytes.totalAmount();
+
+        int length = mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray().length;
+
+        assertThat(bytes.totalAmount()).isEqualTo(totalBefore + length);
+        assertThat(meterRegistry.find("library.request.allocated.bytes").tag("uri", "/books/{id}").summary()).isNotNull();
+    }
+
     @Test
     void testUpdateBookHappyDay() throws Exception {
         Book updatedBook = new Book(savedBook.getId(), "The Hobbit (Updated)",
@@ -242,6 +562,8 @@ public class BookControllerTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updatedBook)))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.version").value(1))
                 .andExpect(jsonPath("$.title").value("The Hobbit (Updated)"))
                 .andExpect(jsonPath("$.description").value("Updated description."));
     }
@@ -280,6 +602,124 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.isbn").value("A book with this ISBN already exists"));
     }
 
+    @Test
+    void testGetBookByIdETag() throws Exception {
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.version").value(0));
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()).header("If-None-Match", "\"5\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetBookByIdNotModifiedFromCache() throws Exception {
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isOk());
+
+        long statements = countStatements("GET", "304", () -> mockMvc.perform(get("/books/{id}", savedBook.getId())
+                        .header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(content().string("")));
+
+        assertThat(statements).isZero();
+    }
+
+    @Test
+    void testUpdateBookIfMatch() throws Exception {
+        Book updatedBook = new Book(savedBook.getId(), "The Hobbit (Updated)",
+                "J. R. R. Tolkien", savedBook.getIsbn(), 1937, "Updated description.");
+
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.version").value(1));
+
+        // A second writer still holding version 0 loses
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("If-Match does not match the current version"));
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(header().string("ETag", "\"1\""));
+    }
+
+    @Test
+    void testUpdateBookIfMatchWeakTag() throws Exception {
+        Book updatedBook = new Book(savedBook.getId(), "The Hobbit (Updated)",
+                "J. R. R. Tolkien", savedBook.getIsbn(), 1937, "Updated description.");
+
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .header("If-Match", "W/\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testUpdateBookInvalid() throws Exception {
+        Book updatedBook = new Book(savedBook.getId(), "", "J. R. R. Tolkien", savedBook.getIsbn(), 1937, null);
+
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("Title cannot be empty"));
+    }
+
+    @Test
+    void testUpdateBookIsOneStatement() throws Exception {
+        Book updatedBook = new Book(savedBook.getId(), "The Hobbit (Updated)",
+                "J. R. R. Tolkien", savedBook.getIsbn(), 1937, "Updated description.");
+
+        long statements = countStatements("PUT", "200", () -> mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isOk()));
+
+        // The book write itself plus the change log number drawn from its sequence. The log entry is
+        // only flushed on commit, which this test's transaction never gets to.
+        assertThat(statements).isEqualTo(2);
+    }
+
+    @Test
+    void testUpdateBookNotFoundIsOneStatement() throws Exception {
+        Book updatedBook = new Book(999L, "Non-existent Book", "Unknown", "9780261103290", 2000, null);
+
+        long statements = countStatements("PUT", "404", () -> mockMvc.perform(put("/books/{id}", 999L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isNotFound()));
+
+        assertThat(statements).isEqualTo(1);
+    }
+
+    @Test
+    void testDeleteBookIsOneStatement() throws Exception {
+        long statements = countStatements("DELETE", "204", () -> mockMvc.perform(delete("/books/{id}", savedBook.getId()))
+                .andExpect(status().isNoContent()));
+
+        // The book write itself plus the change log number drawn from its sequence. The log entry is
+        // only flushed on commit, which this test's transaction never gets to.
+        assertThat(statements).isEqualTo(2);
+    }
+
+    @Test
+    void testDeleteBookNotFoundIsOneStatement() throws Exception {
+        long statements = countStatements("DELETE", "404", () -> mockMvc.perform(delete("/books/{id}", 999L))
+                .andExpect(status().isNotFound()));
+
+        assertThat(statements).isEqualTo(1);
+    }
+
     @Test
     void testDeleteBookHappyDay() throws Exception {
         mockMvc.perform(delete("/books/{id}", savedBook.getId())
@@ -300,6 +740,102 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.error").value("Book with id 999 not found"));
     }
 
+    @Test
+    void testBulkUpdateByAuthor() throws Exception {
+        Book secondBook = bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+        bookService.createBook(new Book("Unfinished Tales", "J. R. R. Tolkien",
+                "9780261103286", 1980, null));
+        bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+        mockMvc.perform(get("/books/{id}", secondBook.getId())); // warm the cache
+
+        mockMvc.perform(patch("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"where": {"author": "J. R. R. Tolkien"}, "set": {"author": "John Ronald Reuel Tolkien"}}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(3));
+
+        mockMvc.perform(get("/books/{id}", secondBook.getId()))
+                .andExpect(jsonPath("$.author").value("John Ronald Reuel Tolkien"))
+                .andExpect(jsonPath("$.title").value("The Silmarillion"));
+        mockMvc.perform(get("/books/search").param("author", "ronald reuel"))
+                .andExpect(jsonPath("$.length()").value(3));
+        mockMvc.perform(get("/books/search").param("author", "orwell"))
+                .andExpect(jsonPath("$[0].author").value("George Orwell"));
+        mockMvc.perform(get("/books/search").param("author", "john ronald").param("mode", "prefix"))
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void testBulkUpdateByIdsAndYearRange() throws Exception {
+        Book secondBook = bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        mockMvc.perform(patch("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {"where": {"ids": [%d, %d, 999], "fromYear": 1970}, "set": {"description": "Posthumous."}}
+                                """, savedBook.getId(), secondBook.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1));
+
+        mockMvc.perform(get("/books/{id}", secondBook.getId()))
+                .andExpect(jsonPath("$.description").value("Posthumous."));
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(jsonPath("$.description").value(savedBook.getDescription()));
+    }
+
+    @Test
+    void testBulkUpdateInvalidRequest() throws Exception {
+        mockMvc.perform(patch("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"where": {}, "set": {"publicationYear": 1200}}
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['where.restricted']").value("Specify ids or at least one of author, fromYear, toYear"))
+                .andExpect(jsonPath("$['set.publicationYear']").value("Publication year must be after 1450"));
+    }
+
+    @Test
+    void testBulkDeleteByYearRange() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+        bookService.createBook(new Book("Unfinished Tales", "J. R. R. Tolkien",
+                "9780261103286", 1980, null));
+        bookService.createBook(new Book("The Children of Húrin", "J. R. R. Tolkien",
+                "9780261103287", 2007, null));
+
+        mockMvc.perform(delete("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"fromYear": 1900, "toYear": 1999}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(3));
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/books/search").param("author", "tolkien"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].publicationYear").value(2007));
+    }
+
+    @Test
+    void testBulkDeleteByIds() throws Exception {
+        mockMvc.perform(delete("/books/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"ids\": [%d, 999]}", savedBook.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1));
+
+        mockMvc.perform(get("/books/{id}", savedBook.getId()))
+                .andExpect(status().isNotFound());
+        assertThat(bookService.doesBookExistByIsbn(savedBook.getIsbn())).isFalse();
+    }
+
     @Test
     void testSearchBooksByTitleHappyDay() throws Exception {
         mockMvc.perform(get("/books/search")
@@ -311,6 +847,21 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$[0].title").value("The Hobbit"));
     }
 
+    @Test
+    void testSearchBooksSparseFields() throws Exception {
+        mockMvc.perform(get("/books/search")
+                        .param("title", "Hobbit")
+                        .param("fields", "title,publicationYear")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(savedBook.getId()))
+                .andExpect(jsonPath("$[0].title").value("The Hobbit"))
+                .andExpect(jsonPath("$[0].publicationYear").value(1937))
+                .andExpect(jsonPath("$[0].author").doesNotExist())
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+
     @Test
     void testSearchBooksByAuthorHappyDay() throws Exception {
         mockMvc.perform(get("/books/search")
@@ -322,6 +873,110 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$[0].author").value("J. R. R. Tolkien"));
     }
 
+    @Test
+    void testSearchBooksByTitleAndAuthorHappyDay() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "hobb")
+                        .param("author", "tolkien")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("The Hobbit"));
+    }
+
+    @Test
+    void testSearchBooksNeedsSomethingToNarrowItDown() throws Exception {
+        // Too short for a trigram on its own, and no words to look up: the whole catalog would have to be ranked
+        mockMvc.perform(get("/books/search")
+                        .param("title", "ho")
+                        .param("q", "!!")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.q").value("Search needs a title or author of at least 3 characters, or a word"));
+
+        // A short needle is still checked once another part of the query narrows the search
+        mockMvc.perform(get("/books/search")
+                        .param("title", "ho")
+                        .param("author", "tolkien")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("The Hobbit"));
+    }
+
+    @Test
+    void testSearchBooksRanking() throws Exception {
+        bookService.createBook(new Book("Hobbit Lore", "Anonymous",
+                "9780261103284", 1990, "Essays on hobbits."));
+
+        // A title starting with the query outranks one merely containing it
+        mockMvc.perform(get("/books/search")
+                        .param("title", "hobbit")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].title").value("Hobbit Lore"))
+                .andExpect(jsonPath("$[1].title").value("The Hobbit"));
+    }
+
+    @Test
+    void testSearchBooksByTextHappyDay() throws Exception {
+        mockMvc.perform(get("/books/search")
+                        .param("q", "Bilbo adventure")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("The Hobbit"));
+
+        mockMvc.perform(get("/books/search")
+                        .param("q", "Bilbo dragon")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testSearchBooksPaginated() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        mockMvc.perform(get("/books/search")
+                        .param("author", "Tolkien")
+                        .param("page", "1")
+                        .param("size", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("The Silmarillion"));
+    }
+
+    @Test
+    void testSearchBooksAfterUpdateAndDelete() throws Exception {
+        Book updatedBook = new Book(savedBook.getId(), "There and Back Again",
+                "J. R. R. Tolkien", savedBook.getIsbn(), 1937, "Updated description.");
+        mockMvc.perform(put("/books/{id}", savedBook.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBook)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "Hobbit"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/books/search")
+                        .param("title", "back again"))
+                .andExpect(jsonPath("$.length()").value(1));
+
+        mockMvc.perform(delete("/books/{id}", savedBook.getId()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "back again"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
     @Test
     void testSearchBooksNotFound() throws Exception {
         mockMvc.perform(get("/books/search")
@@ -331,4 +986,304 @@ public class BookControllerTests {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSearchBooksByTitlePrefix() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "The ")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].title").value("The Hobbit"))
+                .andExpect(jsonPath("$[1].title").value("The Silmarillion"));
+
+        // Prefix mode only matches the start of the title
+        mockMvc.perform(get("/books/search")
+                        .param("title", "hobbit")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testSearchBooksPrefixIgnoresCaseAndAccents() throws Exception {
+        bookService.createBook(new Book("Cien años de soledad", "Gabriel García Márquez",
+                "9780307474728", 1967, "The Buendía family over seven generations."));
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "CIEN ANOS")
+                        .param("author", "gabriel garcia")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].author").value("Gabriel García Márquez"))
+                .andExpect(jsonPath("$[0].normalizedAuthor").doesNotExist());
+
+        mockMvc.perform(get("/books/search")
+                        .param("author", "marquez")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testSearchBooksPrefixAfterUpdate() throws Exception {
+        bookService.updateBook(savedBook.getId(), new Book("There and Back Again", savedBook.getAuthor(),
+                savedBook.getIsbn(), 1937, null), null);
+
+        mockMvc.perform(get("/books/search")
+                        .param("title", "there and")
+                        .param("mode", "prefix")
+                        .param("fields", "title")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("There and Back Again"));
+    }
+
+    @Test
+    void testBackfillSearchColumns() throws Exception {
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE books SET normalized_title = NULL, normalized_author = NULL")
+                .executeUpdate();
+        entityManager.clear(); // the saved book is still managed with its columns filled in
+
+        assertThat(bookService.backfillSearchColumns()).isEqualTo(1);
+        assertThat(bookService.backfillSearchColumns()).isZero();
+        mockMvc.perform(get("/books/search")
+                        .param("author", "j. r. r.")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testSearchBooksPrefixEscapesWildcards() throws Exception {
+        mockMvc.perform(get("/books/search")
+                        .param("title", "%")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testSearchBooksInvalidMode() throws Exception {
+        mockMvc.perform(get("/books/search")
+                        .param("title", "hobbit")
+                        .param("mode", "fuzzy")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.mode").value("Mode must be prefix or contains"));
+
+        mockMvc.perform(get("/books/search")
+                        .param("q", "hobbit")
+                        .param("mode", "prefix")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.q").value("q cannot be combined with mode=prefix"));
+    }
+
+    @Test
+    void testGetFacets() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+        bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+
+        mockMvc.perform(get("/books/facets")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.authors.length()").value(2))
+                .andExpect(jsonPath("$.authors[0].value").value("J. R. R. Tolkien"))
+                .andExpect(jsonPath("$.authors[0].count").value(2))
+                .andExpect(jsonPath("$.authors[1].value").value("George Orwell"))
+                .andExpect(jsonPath("$.decades.length()").value(3))
+                .andExpect(jsonPath("$.decades[0].value").value(1930))
+                .andExpect(jsonPath("$.decades[1].value").value(1940))
+                .andExpect(jsonPath("$.decades[2].value").value(1970));
+    }
+
+    @Test
+    void testGetFacetsFiltered() throws Exception {
+        bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, "A collection of myths and stories."));
+        bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+
+        // Each facet is narrowed by the other facet's filter only
+        mockMvc.perform(get("/books/facets")
+                        .param("author", "J. R. R. Tolkien")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.authors.length()").value(2))
+                .andExpect(jsonPath("$.decades.length()").value(2))
+                .andExpect(jsonPath("$.decades[1].value").value(1970));
+
+        mockMvc.perform(get("/books/facets")
+                        .param("author", "J. R. R. Tolkien")
+                        .param("decade", "1940")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.authors.length()").value(1))
+                .andExpect(jsonPath("$.authors[0].value").value("George Orwell"));
+    }
+
+    @Test
+    void testGetFacetsAfterUpdateAndDelete() throws Exception {
+        Book orwell = bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, null));
+        bookService.updateBook(savedBook.getId(), new Book(savedBook.getTitle(), "John Ronald Reuel Tolkien",
+                savedBook.getIsbn(), 1955, null), null);
+        bookService.deleteBook(orwell.getId());
+
+        mockMvc.perform(get("/books/facets")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.authors.length()").value(1))
+                .andExpect(jsonPath("$.authors[0].value").value("John Ronald Reuel Tolkien"))
+                .andExpect(jsonPath("$.decades.length()").value(1))
+                .andExpect(jsonPath("$.decades[0].value").value(1950));
+    }
+
+    @Test
+    void testGetFacetsLeaveOutUncommittedWrites() throws Exception {
+        long committed = CompletableFuture.supplyAsync(() -> bookFacets.facets(null, null, 10).total()).join();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> {
+            bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, null));
+            // Readers on other threads only count committed books
+            assertThat(CompletableFuture.supplyAsync(() -> bookFacets.facets(null, null, 10).total()).join())
+                    .isEqualTo(committed);
+            status.setRollbackOnly();
+        });
+
+        // Only this test's own (uncommitted) book is counted on top of the committed ones
+        mockMvc.perform(get("/books/facets")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(committed + 1))
+                .andExpect(jsonPath("$.authors[?(@.value == 'George Orwell')]").isEmpty());
+    }
+
+    @Test
+    void testGetFacetsInvalidDecade() throws Exception {
+        mockMvc.perform(get("/books/facets")
+                        .param("decade", "1937")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.decade").value("Decade must be a multiple of 10"));
+    }
+
+    @Test
+    void testGetChanges() throws Exception {
+        long since = changeLogRepository.findLastSequence() - 1; // just before savedBook was created
+        Book orwell = bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+        bookService.updateBook(savedBook.getId(), new Book(savedBook.getTitle(), savedBook.getAuthor(),
+                savedBook.getIsbn(), 1938, savedBook.getDescription()), null);
+        bookService.deleteBook(orwell.getId());
+
+        // Changes come in log order; created/updated entries carry the book as it is now
+        mockMvc.perform(get("/books/changes")
+                        .param("since", String.valueOf(since))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].sequence").value(since + 1))
+                .andExpect(jsonPath("$[0].type").value("CREATED"))
+                .andExpect(jsonPath("$[0].id").value(savedBook.getId()))
+                .andExpect(jsonPath("$[0].book.publicationYear").value(1938))
+                .andExpect(jsonPath("$[1].type").value("CREATED"))
+                .andExpect(jsonPath("$[1].id").value(orwell.getId()))
+                .andExpect(jsonPath("$[1].book").doesNotExist())
+                .andExpect(jsonPath("$[2].type").value("UPDATED"))
+                .andExpect(jsonPath("$[3].sequence").value(since + 4))
+                .andExpect(jsonPath("$[3].type").value("DELETED"))
+                .andExpect(jsonPath("$[3].id").value(orwell.getId()));
+    }
+
+    @Test
+    void testGetChangesPaginated() throws Exception {
+        long since = changeLogRepository.findLastSequence() - 1;
+        bookService.createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+        bookService.createBook(new Book("Brave New World", "Aldous Huxley", "9780060850524", 1932, "Dystopian novel."));
+
+        mockMvc.perform(get("/books/changes?since=" + since + "&limit=2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string("Link", containsString("since=" + (since + 2))));
+
+        mockMvc.perform(get("/books/changes")
+                        .param("since", String.valueOf(since + 2))
+                        .param("limit", "2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].book.title").value("Brave New World"))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void testGetChangesRejectedWritesAreNotLogged() throws Exception {
+        long last = changeLogRepository.findLastSequence();
+        Book duplicate = new Book("Duplicate", "Nobody", savedBook.getIsbn(), 2000, null);
+
+        mockMvc.perform(post("/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(duplicate)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/books/changes")
+                        .param("since", String.valueOf(last))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testGetChangesInvalidParams() throws Exception {
+        mockMvc.perform(get("/books/changes")
+                        .param("since", "-1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.since").value("Since cannot be negative"));
+        mockMvc.perform(get("/books/changes")
+                        .param("limit", "0")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.limit").value("Limit must be between 1 and 1000"));
+    }
+
+    private DistributionSummary requestSummary(String name, String method, String uri, String status) {
+        return DistributionSummary.builder(name)
+                .tags("method", method, "uri", uri, "status", status)
+                .register(meterRegistry);
+    }
+
+    private interface Request {
+        void perform() throws Exception;
+    }
+
+    // SQL statements issued by one request to /books/{id}, as recorded by the request metrics
+    private long countStatements(String method, String status, Request request) throws Exception {
+        entityManager.flush(); // write the book saved in setUp before counting
+        DistributionSummary statements = requestSummary("library.request.db.statements", method, "/books/{id}", status);
+        long countBefore = statements.count();
+        double totalBefore = statements.totalAmount();
+
+        request.perform();
+
+        assertThat(statements.count()).isEqualTo(countBefore + 1);
+        return (long) (statements.totalAmount() - totalBefore);
+    }
+
+}
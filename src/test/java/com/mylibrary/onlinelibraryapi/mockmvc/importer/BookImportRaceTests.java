@@ -0,0 +1,63 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.importer;
+
+import com.mylibrary.onlinelibraryapi.importer.BookImportService;
+import com.mylibrary.onlinelibraryapi.importer.ImportError;
+import com.mylibrary.onlinelibraryapi.importer.ImportFormat;
+import com.mylibrary.onlinelibraryapi.importer.ImportSummary;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:book-import-race",
+        "openai.api.key=book-import-race"})
+class BookImportRaceTests {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @MockitoSpyBean
+    private BookService bookService;
+
+    @Test
+    void isbnTakenAfterTheCheckOnlyRejectsItsRow() throws Exception {
+        // Another writer inserts the second row's ISBN right after the chunk's ISBN check
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object existing = invocation.callRealMethod();
+            if (raced.compareAndSet(false, true)) {
+                bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+            }
+            return existing;
+        }).when(bookService).findExistingIsbns(any());
+
+        String body = """
+                {"title":"The Silmarillion","author":"J. R. R. Tolkien","isbn":"9780261103284","publicationYear":1977}
+                {"title":"The Hobbit again","author":"J. R. R. Tolkien","isbn":"9780261103283","publicationYear":1937}
+                {"title":"Unfinished Tales","author":"J. R. R. Tolkien","isbn":"9780261103286","publicationYear":1980}
+                """;
+        List<ImportError> errors = new ArrayList<>();
+        ImportSummary summary = bookImportService.importBooks(new BufferedReader(new StringReader(body)),
+                ImportFormat.NDJSON, errors::add);
+
+        assertThat(summary).isEqualTo(new ImportSummary(2, 1));
+        assertThat(errors).containsExactly(new ImportError(2, Map.of("isbn", "A book with this ISBN already exists")));
+        assertThat(bookService.findExistingIsbns(List.of("9780261103284", "9780261103286")))
+                .containsExactlyInAnyOrder("9780261103284", "9780261103286");
+    }
+}
@@ -0,0 +1,135 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.limit;
+
+import com.mylibrary.onlinelibraryapi.limit.AdaptiveLimit;
+import com.mylibrary.onlinelibraryapi.limit.ConcurrencyLimits;
+import com.mylibrary.onlinelibraryapi.limit.EndpointClass;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Requests over their endpoint class's limit are shed with 503; slots are taken directly to fill the limits
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"library.limits.crud.initial=10", "library.limits.search.initial=4",
+        "library.limits.critical-reserve=0.2", "library.limits.retry-after=2s", "openai.api.key=concurrency-limits"})
+@AutoConfigureMockMvc
+@Transactional
+class ConcurrencyLimitTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConcurrencyLimits limits;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<ConcurrencyLimits.Permit> held = new ArrayList<>();
+
+    @AfterEach
+    void releaseSlots() {
+        held.forEach(permit -> permit.release(false));
+    }
+
+    @Test
+    void searchesOverTheirLimitAreShed() throws Exception {
+        fill(EndpointClass.SEARCH, false);
+        double rejectedBefore = meterRegistry.get("library.limits.rejected").tag("endpoint", "search")
+                .counter().count();
+
+        mockMvc.perform(get("/books/search").param("title", "hobbit"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"))
+                .andExpect(jsonPath("$.error").value("Too many concurrent search requests, retry in 2 s"));
+        mockMvc.perform(get("/books"))
+                .andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("library.limits.rejected").tag("endpoint", "search").counter().count())
+                .isEqualTo(rejectedBefore + 1);
+    }
+
+    @Test
+    void lookupsByIdKeepFlowingWhileSearchesAreShed() throws Exception {
+        Book book = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        fill(EndpointClass.CRUD, false); // everything but the reserve for critical requests
+
+        mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/books/search").param("title", "hobbit"))
+                .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(get("/books"))
+                .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(get("/books/{id}/ai-insights", book.getId()))
+                .andExpect(status().isServiceUnavailable());
+
+        fill(EndpointClass.CRUD, true);
+        mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void limitFollowsLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 100, 1.5);
+        long fast = TimeUnit.MILLISECONDS.toNanos(10);
+
+        // Idle: low latency alone is no reason to grow
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(fast, 2, false);
+        }
+        assertThat(limit.limit()).isEqualTo(20);
+
+        // Busy at steady latency: grows
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(fast, limit.limit(), false);
+        }
+        int grown = limit.limit();
+        assertThat(grown).isGreaterThan(20);
+
+        // Requests start queueing somewhere: shrinks
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(fast * 5, limit.limit(), false);
+        }
+        int shrunk = limit.limit();
+        assertThat(shrunk).isLessThan(grown);
+
+        // Server errors cut it multiplicatively, down to the minimum
+        limit.onSample(fast, shrunk, true);
+        assertThat(limit.limit()).isLessThan(shrunk);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(fast, 1, true);
+        }
+        assertThat(limit.limit()).isEqualTo(4);
+    }
+
+    // Takes slots until the class is full for requests of this priority
+    private void fill(EndpointClass endpoint, boolean critical) {
+        Optional<ConcurrencyLimits.Permit> permit;
+        while ((permit = limits.tryAcquire(endpoint, critical)).isPresent()) {
+            held.add(permit.get());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.mylibrary.onlinelibraryapi.mockmvc.service;
+
+import com.mylibrary.onlinelibraryapi.cache.BookCache;
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.search.BookSearchIndex;
+import com.mylibrary.onlinelibraryapi.search.SearchMode;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Concurrent identical reads outside a transaction share one lookup (and so at most one query); the first one is
+// held until the others have joined it. Uses its own database, as the books have to be committed to be read by
+// other threads.
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:request-coalescing",
+        "openai.api.key=request-coalescing"})
+class RequestCoalescingTests {
+    private static final int READERS = 8;
+
+    @Autowired
+    private BookService bookService;
+
+    @MockitoSpyBean
+    private BookCache bookCache;
+
+    @MockitoSpyBean
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService readers = Executors.newFixedThreadPool(READERS);
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        book = bookService.createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        readers.shutdownNow();
+        bookService.deleteBook(book.getId());
+    }
+
+    @Test
+    void concurrentLookupsShareOneQuery() throws Exception {
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(bookCache).get(eq(book.getId()), any());
+
+        List<Optional<Book>> results = readConcurrently("book-by-id", () -> bookService.getBookById(book.getId()));
+
+        verify(bookCache, times(1)).get(eq(book.getId()), any());
+        assertThat(results).allSatisfy(result ->
+                assertThat(result).hasValueSatisfying(found -> assertThat(found.getTitle()).isEqualTo("The Hobbit")));
+    }
+
+    @Test
+    void identicalSearchesShareOneQuery() throws Exception {
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(bookSearchIndex).search(any(), anyLong(), anyInt());
+
+        List<List<Book>> results = readConcurrently("search",
+                () -> bookService.searchBooks(SearchMode.CONTAINS, "hobbit", null, null, 0, 10));
+
+        verify(bookSearchIndex, times(1)).search(any(), anyLong(), anyInt());
+        assertThat(results).allSatisfy(result ->
+                assertThat(result).extracting(Book::getTitle).containsExactly("The Hobbit"));
+    }
+
+    @Test
+    void readsInsideTransactionsAreNotShared() throws Exception {
+        Thread testThread = Thread.currentThread();
+        doAnswer(invocation -> {
+            if (Thread.currentThread() != testThread) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return invocation.callRealMethod();
+        }).when(bookCache).get(eq(book.getId()), any());
+        double executedBefore = meterRegistry.get("library.reads.executed").tag("read", "book-by-id").counter().count();
+        Future<Optional<Book>> outside = readers.submit(() -> bookService.getBookById(book.getId()));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("library.reads.executed").tag("read", "book-by-id").counter().count() == executedBefore
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        double coalescedBefore = coalesced("book-by-id");
+
+        // The read in flight started before the update, so joining it would not show the transaction its own write
+        transactionTemplate.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), new Book("The Hobbit, or There and Back Again",
+                    "J. R. R. Tolkien", "9780261103283", 1937, null), null);
+            assertThat(bookService.getBookById(book.getId())).hasValueSatisfying(found ->
+                    assertThat(found.getTitle()).isEqualTo("The Hobbit, or There and Back Again"));
+            status.setRollbackOnly();
+        });
+        release.countDown();
+
+        assertThat(outside.get(10, TimeUnit.SECONDS)).isPresent();
+        assertThat(coalesced("book-by-id")).isEqualTo(coalescedBefore);
+    }
+
+    // Runs the read on every reader thread, releasing the first one only once all the others have joined it
+    private <T> List<T> readConcurrently(String read, Supplier<T> call) throws Exception {
+        double coalescedBefore = coalesced(read);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            futures.add(readers.submit(call::get));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalesced(read) - coalescedBefore < READERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private double coalesced(String read) {
+        return meterRegistry.get("library.reads.coalesced").tag("read", read).counter().count();
+    }
+}
@@ -1,7 +1,11 @@
 package com.mylibrary.onlinelibraryapi.testresttemplate.controller;
 
 import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.service.BookChangeFeed;
+import com.mylibrary.onlinelibraryapi.service.BookInsightsPrecomputer;
+import com.sun.net.httpserver.HttpServer;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,14 +16,31 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
 
 @ActiveProfiles("test")
 @TestPropertySource(locations = "classpath:application-test.properties")
@@ -33,14 +54,65 @@ public class BookControllerTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private BookInsightsPrecomputer bookInsightsPrecomputer;
+
+    @Autowired
+    private BookChangeFeed bookChangeFeed;
+
     private String baseUrl;
 
+    // Stands in for OpenAI: answers every call with a numbered tagline after a short delay
+    private static final AtomicInteger openAiCalls = new AtomicInteger();
+    private static HttpServer openAi;
+
     @BeforeAll
     static void loadEnv() {
         Dotenv dotenv = Dotenv.load();
         System.setProperty("openai.api.key", Objects.requireNonNull(dotenv.get("OPENAI_API_KEY")));
     }
 
+    @DynamicPropertySource
+    static void openAiProperties(DynamicPropertyRegistry registry) {
+        registry.add("openai.api.url", () -> "http://localhost:" + startOpenAiStub().getAddress().getPort() + "/");
+    }
+
+    private static synchronized HttpServer startOpenAiStub() {
+        if (openAi == null) {
+            try {
+                openAi = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            openAi.setExecutor(Executors.newCachedThreadPool());
+            openAi.createContext("/", exchange -> {
+                int call = openAiCalls.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                    byte[] body = ("{\"choices\":[{\"message\":{\"content\":\" Tagline " + call + " \"}}]}")
+                            .getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            });
+            openAi.start();
+        }
+        return openAi;
+    }
+
+    @AfterAll
+    static void stopOpenAiStub() {
+        if (openAi != null) {
+            openAi.stop(0);
+            openAi = null;
+        }
+    }
+
     @BeforeEach
     void setUp() {
         baseUrl = "http://localhost:" + port + "/books";
@@ -255,6 +327,145 @@ public class BookControllerTests {
         books.forEach(book -> restTemplate.delete(baseUrl + "/" + book.getId()));
     }
 
+    @Test
+    void testStreamAllBooksHappyDay() {
+        Book testBook1 = new Book("1984", "George Orwell", "9780451524935", 1949,
+                "Dystopian novel.");
+        Book testBook2 = new Book("Brave New World", "Aldous Huxley", "9780060850524",
+                1932, "Dystopian novel.");
+        Long book1Id = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook1, Book.class).getBody()).getId();
+        Long book2Id = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook2, Book.class).getBody()).getId();
+
+        ResponseEntity<List<Book>> response = restTemplate.exchange(baseUrl + "/stream", HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {});
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody()).extracting(Book::getId).contains(book1Id, book2Id);
+        assertThat(response.getBody()).extracting(Book::getId).isSorted();
+
+        restTemplate.delete(baseUrl + "/" + book1Id);
+        restTemplate.delete(baseUrl + "/" + book2Id);
+    }
+
+    @Test
+    void testGetBooksNotModifiedUntilCatalogChanges() {
+        ResponseEntity<String> first = restTemplate.getForEntity(baseUrl, String.class);
+        String etag = first.getHeaders().getETag();
+        assertThat(etag).isNotNull();
+        assertThat(first.getHeaders().getLastModified()).isEqualTo(-1);
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(etag);
+        ResponseEntity<String> unchanged = restTemplate.exchange(baseUrl, HttpMethod.GET,
+                new HttpEntity<>(conditional), String.class);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(unchanged.getBody()).isNull();
+
+        // Any committed write moves the collection ETag
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        ResponseEntity<String> changed = restTemplate.exchange(baseUrl, HttpMethod.GET,
+                new HttpEntity<>(conditional), String.class);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+
+        // If-Modified-Since alone never gets a 304: a write in the same second would go unnoticed
+        HttpHeaders byDate = new HttpHeaders();
+        byDate.setIfModifiedSince(System.currentTimeMillis());
+        assertThat(restTemplate.exchange(baseUrl, HttpMethod.GET, new HttpEntity<>(byDate), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        restTemplate.delete(baseUrl + "/" + bookId);
+    }
+
+    @Test
+    void testChangesStreamHappyDay() {
+        long since = bookChangeFeed.lastSequence();
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        restTemplate.put(baseUrl + "/" + bookId, new Book(bookId, "1984 (Updated)", "George Orwell",
+                "9780451524935", 1949, "Dystopian novel."));
+        restTemplate.delete(baseUrl + "/" + bookId);
+
+        List<ServerSentEvent<Map<String, Object>>> events = changes(since, 3);
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("created", "updated", "deleted");
+        assertThat(events).extracting(ServerSentEvent::id)
+                .containsExactly(String.valueOf(since + 1), String.valueOf(since + 2), String.valueOf(since + 3));
+        assertThat(events).allSatisfy(event -> assertThat(event.data()).containsEntry("id", bookId.intValue()));
+        assertThat(events.get(1).data()).extractingByKey("book").asInstanceOf(MAP)
+                .containsEntry("title", "1984 (Updated)");
+        assertThat(events.get(2).data()).doesNotContainKey("book");
+
+        // Resuming after the first event picks up with the second
+        List<ServerSentEvent<Map<String, Object>>> resumed = WebClient.create(baseUrl).get().uri("/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", events.get(0).id())
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {})
+                .filter(event -> event.event() != null)
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertThat(resumed).extracting(ServerSentEvent::event).containsExactly("updated", "deleted");
+    }
+
+    @Test
+    void testChangesStreamResumesFromChangeLog() {
+        long since = bookChangeFeed.lastSequence();
+        List<Long> bookIds = IntStream.range(0, 6)
+                .mapToObj(i -> new Book("Book " + i, "Author", "978000000010" + i, 2000, null))
+                .map(book -> Objects.requireNonNull(restTemplate.postForEntity(baseUrl, book, Book.class).getBody()).getId())
+                .toList();
+
+        // The feed only buffers the last 4 changes (see application-test.properties), the rest come from the log
+        List<ServerSentEvent<Map<String, Object>>> events = changes(since, 6);
+        assertThat(events).extracting(ServerSentEvent::id)
+                .containsExactlyElementsOf(LongStream.rangeClosed(since + 1, since + 6).mapToObj(String::valueOf).toList());
+        assertThat(events).extracting(event -> ((Number) event.data().get("id")).longValue())
+                .containsExactlyElementsOf(bookIds);
+
+        // The polling endpoint serves the same changes
+        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                baseUrl + "/changes?since=" + since + "&limit=6", HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {});
+        assertThat(response.getBody()).extracting(change -> String.valueOf(change.get("sequence")))
+                .containsExactlyElementsOf(events.stream().map(ServerSentEvent::id).toList());
+
+        bookIds.forEach(id -> restTemplate.delete(baseUrl + "/" + id));
+    }
+
+    @Test
+    void testChangesStreamLive() {
+        CompletableFuture<List<ServerSentEvent<Map<String, Object>>>> live = CompletableFuture.supplyAsync(
+                () -> changes(null, 1));
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        // The subscription may not be registered yet when the first book is created, so keep writing until it shows
+        Long bookId = null;
+        while (!live.isDone()) {
+            if (bookId != null) {
+                restTemplate.delete(baseUrl + "/" + bookId);
+            }
+            bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        }
+
+        assertThat(live.join()).extracting(ServerSentEvent::event).first().isIn("created", "deleted");
+        restTemplate.delete(baseUrl + "/" + bookId);
+    }
+
+    private List<ServerSentEvent<Map<String, Object>>> changes(Long since, int count) {
+        return WebClient.create(baseUrl).get()
+                .uri(uri -> uri.path("/changes").queryParamIfPresent("since", Optional.ofNullable(since)).build())
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {})
+                .filter(event -> event.event() != null) // skip keep-alive comments
+                .take(count)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
     @Test
     void testGetBookByIdHappyDay() {
         // First, create a book
@@ -302,6 +513,7 @@ public class BookControllerTests {
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getTitle()).isEqualTo("1984 (Updated)");
         assertThat(response.getBody().getPublicationYear()).isEqualTo(1950);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1\"");
 
         restTemplate.delete(baseUrl + "/" + bookId);
     }
@@ -433,4 +645,103 @@ public class BookControllerTests {
         assertThat(response.getBody().size()).isEqualTo(0); // No books should be found
     }
 
-}
\ No newline at end of file
+    @Test
+    void testAiInsightsHappyDay() {
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        int callsBefore = openAiCalls.get();
+
+        ResponseEntity<String> response = restTemplate.getForEntity(baseUrl + "/" + bookId + "/ai-insights", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("Tagline " + (callsBefore + 1));
+
+        // The stored tagline is reused while the book is unchanged
+        ResponseEntity<String> again = restTemplate.getForEntity(baseUrl + "/" + bookId + "/ai-insights", String.class);
+        assertThat(again.getBody()).isEqualTo(response.getBody());
+        assertThat(openAiCalls.get()).isEqualTo(callsBefore + 1);
+
+        restTemplate.delete(baseUrl + "/" + bookId);
+    }
+
+    @Test
+    void testAiInsightsRegeneratedAfterUpdate() {
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        String first = restTemplate.getForEntity(baseUrl + "/" + bookId + "/ai-insights", String.class).getBody();
+
+        Book updatedBook = new Book(bookId, "1984", "George Orwell", "9780451524935", 1949, "A different description.");
+        restTemplate.put(baseUrl + "/" + bookId, updatedBook);
+
+        String second = restTemplate.getForEntity(baseUrl + "/" + bookId + "/ai-insights", String.class).getBody();
+        assertThat(second).isNotNull().isNotEqualTo(first);
+
+        restTemplate.delete(baseUrl + "/" + bookId);
+    }
+
+    @Test
+    void testAiInsightsConcurrentRequestsShareOneCall() {
+        Book testBook = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long bookId = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, testBook, Book.class).getBody()).getId();
+        int callsBefore = openAiCalls.get();
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<ResponseEntity<String>>> requests = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() ->
+                        restTemplate.getForEntity(baseUrl + "/" + bookId + "/ai-insights", String.class), clients))
+                .toList();
+        List<String> taglines = requests.stream().map(CompletableFuture::join).map(ResponseEntity::getBody).toList();
+        clients.shutdown();
+
+        assertThat(taglines).containsOnly("Tagline " + (callsBefore + 1));
+        assertThat(openAiCalls.get()).isEqualTo(callsBefore + 1);
+
+        restTemplate.delete(baseUrl + "/" + bookId);
+    }
+
+    @Test
+    void testAiInsightsNotFound() {
+        ResponseEntity<Map<String, String>> response = restTemplate.exchange(baseUrl + "/999/ai-insights",
+                HttpMethod.GET, null, new ParameterizedTypeReference<>() {});
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().get("error")).isEqualTo("Book with id 999 not found");
+    }
+
+    @Test
+    void testAiInsightsPrecomputed() {
+        Book book1 = new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel.");
+        Long book1Id = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, book1, Book.class).getBody()).getId();
+        Book book2 = new Book("The Hobbit", "J. R. R. Tolkien", "9780345339683", 1937, "Fantasy novel");
+        Long book2Id = Objects.requireNonNull(restTemplate.postForEntity(baseUrl, book2, Book.class).getBody()).getId();
+        int callsBefore = openAiCalls.get();
+
+        BookInsightsPrecomputer.Progress progress = bookInsightsPrecomputer.runPass();
+        assertThat(progress.running()).isFalse();
+        assertThat(progress.scanned()).isEqualTo(2);
+        assertThat(progress.generated()).isEqualTo(2);
+        assertThat(progress.failed()).isZero();
+        assertThat(openAiCalls.get()).isEqualTo(callsBefore + 2);
+
+        // Served from the precomputed values
+        assertThat(restTemplate.getForEntity(baseUrl + "/" + book1Id + "/ai-insights", String.class).getBody())
+                .startsWith("Tagline ");
+        assertThat(restTemplate.getForEntity(baseUrl + "/" + book2Id + "/ai-insights", String.class).getBody())
+                .startsWith("Tagline ");
+        assertThat(openAiCalls.get()).isEqualTo(callsBefore + 2);
+
+        ResponseEntity<Map<String, Object>> progressResponse = restTemplate.exchange(baseUrl + "/ai-insights/progress",
+                HttpMethod.GET, null, new ParameterizedTypeReference<>() {});
+        assertThat(progressResponse.getBody()).containsEntry("generated", 2);
+
+        // A second pass finds nothing to do
+        progress = bookInsightsPrecomputer.runPass();
+        assertThat(progress.upToDate()).isEqualTo(2);
+        assertThat(progress.generated()).isZero();
+        assertThat(openAiCalls.get()).isEqualTo(callsBefore + 2);
+
+        restTemplate.delete(baseUrl + "/" + book1Id);
+        restTemplate.delete(baseUrl + "/" + book2Id);
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.mylibrary.onlinelibraryapi.webtestclient.controller;
+
+import com.mylibrary.onlinelibraryapi.model.Book;
+import com.mylibrary.onlinelibraryapi.model.BookSelection;
+import com.mylibrary.onlinelibraryapi.service.BookChangeFeed;
+import com.mylibrary.onlinelibraryapi.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The reactive profile: functional WebFlux routes on R2DBC, checked against the servlet stack's contract
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "spring.datasource.url=jdbc:h2:mem:reactive",
+                "openai.api.key=reactive"})
+class BookRoutesTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookChangeFeed bookChangeFeed;
+
+    @AfterEach
+    void tearDown() {
+        // Through BookService so the search index and facets forget the books too
+        bookService.deleteBooks(new BookSelection(null, null, Integer.MIN_VALUE, null));
+    }
+
+    @Test
+    void testCreateAndGetBook() {
+        Book created = createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937,
+                "A fantasy novel about Bilbo Baggins' adventure."));
+        assertThat(created.getId()).isNotNull();
+
+        webTestClient.get().uri("/books/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("The Hobbit")
+                .jsonPath("$.description").isEqualTo("A fantasy novel about Bilbo Baggins' adventure.");
+
+        webTestClient.get().uri("/books/{id}", created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void testCreateBookInvalid() {
+        webTestClient.post().uri("/books")
+                .bodyValue(new Book("", "J. R. R. Tolkien", "9780261103283", 1937, null))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Title cannot be empty");
+    }
+
+    @Test
+    void testCreateBookDuplicateIsbn() {
+        createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+
+        webTestClient.post().uri("/books")
+                .bodyValue(new Book("The Hobbit again", "J. R. R. Tolkien", "9780261103283", 1937, null))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.isbn").isEqualTo("A book with this ISBN already exists");
+    }
+
+    @Test
+    void testIdsDoNotCollideWithJpaInserts() {
+        Book viaJpa = bookService.createBook(new Book("The Silmarillion", "J. R. R. Tolkien",
+                "9780261103284", 1977, null));
+        Book viaR2dbc = createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        Book viaJpaAgain = bookService.createBook(new Book("Unfinished Tales", "J. R. R. Tolkien",
+                "9780261103286", 1980, null));
+
+        assertThat(List.of(viaJpa.getId(), viaR2dbc.getId(), viaJpaAgain.getId())).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void testGetAllBooksPaginated() {
+        Book first = createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        Book second = createBook(new Book("The Silmarillion", "J. R. R. Tolkien", "9780261103284", 1977, null));
+
+        String nextToken = webTestClient.get().uri("/books?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectHeader().exists(HttpHeaders.LINK)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(first.getId())
+                .returnResult().getResponseHeaders().getFirst("X-Next-Page-Token");
+
+        webTestClient.get().uri("/books?limit=1&after={token}", nextToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("X-Next-Page-Token")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(second.getId());
+
+        webTestClient.get().uri("/books?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.limit").isEqualTo("Limit must be between 1 and 1000");
+    }
+
+    @Test
+    void testStreamAllBooks() {
+        createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        createBook(new Book("The Silmarillion", "J. R. R. Tolkien", "9780261103284", 1977, null));
+
+        webTestClient.get().uri("/books/stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+
+        List<Book> books = webTestClient.get().uri("/books/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Book.class).getResponseBody()
+                .collectList().block();
+        assertThat(books).extracting(Book::getTitle).containsExactly("The Hobbit", "The Silmarillion");
+    }
+
+    @Test
+    void testUpdateBookIfMatch() {
+        Book created = createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        Book update = new Book("The Hobbit, or There and Back Again", "J. R. R. Tolkien", "9780261103283", 1937, null);
+
+        webTestClient.put().uri("/books/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("The Hobbit, or There and Back Again");
+
+        webTestClient.put().uri("/books/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        webTestClient.put().uri("/books/{id}", created.getId())
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"")
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(2);
+
+        webTestClient.put().uri("/books/{id}", created.getId() + 1000)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Book with id " + (created.getId() + 1000) + " not found");
+    }
+
+    @Test
+    void testChangesStream() {
+        long since = bookChangeFeed.lastSequence();
+        Book created = createBook(new Book("1984", "George Orwell", "9780451524935", 1949, "Dystopian novel."));
+        webTestClient.delete().uri("/books/{id}", created.getId()).exchange().expectStatus().isNoContent();
+
+        List<ServerSentEvent<Map<String, Object>>> events = webTestClient.get().uri("/books/changes?since={since}", since)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {})
+                .getResponseBody()
+                .filter(event -> event.event() != null)
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("created", "deleted");
+        assertThat(events).extracting(ServerSentEvent::id)
+                .containsExactly(String.valueOf(since + 1), String.valueOf(since + 2));
+    }
+
+    @Test
+    void testDeleteBook() {
+        Book created = createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+
+        webTestClient.delete().uri("/books/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/books/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/books/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testSearchBooks() {
+        createBook(new Book("The Hobbit", "J. R. R. Tolkien", "9780261103283", 1937, null));
+        createBook(new Book("Cien años de soledad", "Gabriel García Márquez", "9780307474728", 1967, null));
+
+        // Written through R2DBC, found through the in-memory index
+        webTestClient.get().uri("/books/search?title=hobb")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("The Hobbit");
+
+        webTestClient.get().uri("/books/search?author=GABRIEL GARCIA&mode=prefix")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("Cien años de soledad");
+
+        webTestClient.get().uri("/books/search?q=hobbit&mode=prefix")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.q").isEqualTo("q cannot be combined with mode=prefix");
+    }
+
+    private Book createBook(Book book) {
+        return webTestClient.post().uri("/books")
+                .bodyValue(book)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Book.class)
+                .returnResult().getResponseBody();
+    }
+}